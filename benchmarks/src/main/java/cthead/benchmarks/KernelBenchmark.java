@@ -0,0 +1,77 @@
+package cthead.benchmarks;
+
+import cthead.BrickMap;
+import cthead.BrickedVolume;
+import cthead.CompositingKernel;
+import cthead.RenderEngine;
+import cthead.TransferFunction;
+import cthead.View;
+import cthead.Volume;
+import cthead.VolumeRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and vector compositing kernels on the same volume and view. The segment cache is
+ * off so every call marches the rays. The forks are started with the vector module, so both kernels run
+ * in the same kind of JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class KernelBenchmark {
+    @Param({"256x256x113", "512x512x256"})
+    public String size;
+
+    @Param({"0.12", "0.5"})
+    public double skinOpacity;
+
+    @Param({"TOP_DOWN", "FRONT_BACK", "SIDE_TO_SIDE"})
+    public View view;
+
+    @Param({"SCALAR", "VECTOR"})
+    public CompositingKernel kernel;
+
+    private RenderEngine engine;
+    private VolumeRenderer renderer;
+    private int[] pixels;
+
+    @Setup
+    public void setUp() {
+        Volume volume = new BrickedVolume(SyntheticVolumes.syntheticHead(size, 1), BrickedVolume.DEFAULT_BRICK_SIZE);
+        engine = new RenderEngine();
+        renderer = new VolumeRenderer(volume, new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE), engine,
+                TransferFunction.ctHead(skinOpacity));
+        renderer.setKernel(kernel);
+        if (renderer.kernel() != kernel) {
+            throw new IllegalStateException("The " + kernel + " kernel is not available");
+        }
+        pixels = new int[view.width(volume) * view.height(volume)];
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public int[] render() {
+        renderer.render(view, pixels);
+        return pixels;
+    }
+}
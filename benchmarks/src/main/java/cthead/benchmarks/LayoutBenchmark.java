@@ -0,0 +1,91 @@
+package cthead.benchmarks;
+
+import cthead.BrickMap;
+import cthead.BrickedVolume;
+import cthead.RenderEngine;
+import cthead.TransferFunction;
+import cthead.View;
+import cthead.Volume;
+import cthead.VolumeRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the linear and bricked volume layouts along each axis. Every ray is walked to the end so
+ * both layouts read exactly the same voxels, and the scores can be divided by the voxel count for a
+ * cost per sample. The linear layout is fast along x and slow along z, the bricked one about the same
+ * on every axis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class LayoutBenchmark {
+    @Param({"512x512x256"})
+    public String size;
+
+    @Param({"linear", "bricked"})
+    public String layout;
+
+    @Param({"TOP_DOWN", "FRONT_BACK", "SIDE_TO_SIDE"})
+    public View view;
+
+    private RenderEngine engine;
+    private Volume volume;
+    private VolumeRenderer renderer;
+    private int[] pixels;
+
+    @Setup
+    public void setUp() {
+        Volume linear = SyntheticVolumes.syntheticHead(size, 1);
+        volume = "linear".equals(layout) ? linear : new BrickedVolume(linear, BrickedVolume.DEFAULT_BRICK_SIZE);
+        engine = new RenderEngine();
+        renderer = new VolumeRenderer(volume, new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE), engine,
+                TransferFunction.ctHead(0.12));
+        renderer.setTerminationEpsilon(0);
+        pixels = new int[view.width(volume) * view.height(volume)];
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    /**
+     * Sums every voxel with the view's depth axis in the innermost loop, like a ray.
+     */
+    @Benchmark
+    public long walk() {
+        long sum = 0;
+        int w = view.width(volume), h = view.height(volume), d = view.depth(volume);
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                for (int k = 0; k < d; k++) {
+                    sum += volume.get(view.coordinate(0, i, j, k), view.coordinate(1, i, j, k),
+                            view.coordinate(2, i, j, k));
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int[] render() {
+        renderer.render(view, pixels);
+        return pixels;
+    }
+}
@@ -0,0 +1,58 @@
+package cthead.benchmarks;
+
+import cthead.LinearVolume;
+import cthead.VolumeLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times readData(): loading a raw volume file into memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"256x256x113", "512x512x256"})
+    public String size;
+
+    private Path file;
+    private int width, height, depth;
+
+    @Setup
+    public void writeFile() throws IOException {
+        LinearVolume volume = SyntheticVolumes.syntheticHead(size, 1);
+        width = volume.width();
+        height = volume.height();
+        depth = volume.depth();
+        file = Files.createTempFile("cthead", ".raw");
+        SyntheticVolumes.writeRaw(volume, file);
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public LinearVolume readData() throws IOException {
+        return VolumeLoader.load(file, width, height, depth);
+    }
+}
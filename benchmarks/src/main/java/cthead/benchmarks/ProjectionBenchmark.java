@@ -0,0 +1,68 @@
+package cthead.benchmarks;
+
+import cthead.BrickMap;
+import cthead.BrickedVolume;
+import cthead.GreyTable;
+import cthead.IntensityProjection;
+import cthead.ProjectionRenderer;
+import cthead.RenderEngine;
+import cthead.View;
+import cthead.Volume;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the maximum and average intensity projections of each view, to compare with RenderBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProjectionBenchmark {
+    @Param({"256x256x113", "512x512x256"})
+    public String size;
+
+    @Param({"MAXIMUM", "AVERAGE"})
+    public IntensityProjection projection;
+
+    @Param({"TOP_DOWN", "FRONT_BACK", "SIDE_TO_SIDE"})
+    public View view;
+
+    private RenderEngine engine;
+    private ProjectionRenderer renderer;
+    private int[] pixels;
+
+    @Setup
+    public void setUp() {
+        Volume volume = new BrickedVolume(SyntheticVolumes.syntheticHead(size, 1), BrickedVolume.DEFAULT_BRICK_SIZE);
+        engine = new RenderEngine();
+        renderer = new ProjectionRenderer(volume, new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE), engine,
+                new GreyTable(volume.min(), volume.max()));
+        pixels = new int[view.width(volume) * view.height(volume)];
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public int[] project() {
+        renderer.render(view, projection, pixels);
+        return pixels;
+    }
+}
@@ -0,0 +1,90 @@
+package cthead.benchmarks;
+
+import cthead.BrickMap;
+import cthead.BrickedVolume;
+import cthead.RenderEngine;
+import cthead.TransferFunction;
+import cthead.View;
+import cthead.Volume;
+import cthead.VolumeRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the volume renders, the work behind topDownRender, frontBackRender and sideToSideRender,
+ * for a range of skin opacities and both volume layouts. An opacity of 0 lets the skin be skipped as
+ * empty space. With the segment cache on, every call after the first is composited from the cached runs,
+ * which is the cost of a frame while the skin opacity slider moves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RenderBenchmark {
+    @Param({"256x256x113", "512x512x256"})
+    public String size;
+
+    @Param({"0.0", "0.12", "0.5"})
+    public double skinOpacity;
+
+    @Param({"linear", "bricked"})
+    public String layout;
+
+    @Param({"0", "64"})
+    public long segmentCacheMB;
+
+    private RenderEngine engine;
+    private VolumeRenderer renderer;
+    private int[] topPixels, frontPixels, sidePixels;
+
+    @Setup
+    public void setUp() {
+        Volume linear = SyntheticVolumes.syntheticHead(size, 1);
+        Volume volume = "linear".equals(layout) ? linear
+                : new BrickedVolume(linear, BrickedVolume.DEFAULT_BRICK_SIZE);
+        engine = new RenderEngine();
+        renderer = new VolumeRenderer(volume, new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE), engine,
+                TransferFunction.ctHead(skinOpacity));
+        renderer.setSegmentCacheBudget(segmentCacheMB << 20);
+        topPixels = new int[View.TOP_DOWN.width(volume) * View.TOP_DOWN.height(volume)];
+        frontPixels = new int[View.FRONT_BACK.width(volume) * View.FRONT_BACK.height(volume)];
+        sidePixels = new int[View.SIDE_TO_SIDE.width(volume) * View.SIDE_TO_SIDE.height(volume)];
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public int[] topDownRender() {
+        renderer.render(View.TOP_DOWN, topPixels);
+        return topPixels;
+    }
+
+    @Benchmark
+    public int[] frontBackRender() {
+        renderer.render(View.FRONT_BACK, frontPixels);
+        return frontPixels;
+    }
+
+    @Benchmark
+    public int[] sideToSideRender() {
+        renderer.render(View.SIDE_TO_SIDE, sidePixels);
+        return sidePixels;
+    }
+}
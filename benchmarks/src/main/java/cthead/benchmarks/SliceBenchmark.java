@@ -0,0 +1,78 @@
+package cthead.benchmarks;
+
+import cthead.BrickedVolume;
+import cthead.RenderEngine;
+import cthead.SliceRenderer;
+import cthead.View;
+import cthead.Volume;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the slice views, the work behind topDownSlices, frontBackSlices and sideToSideSlices.
+ * Each call renders the middle slice into a reused pixel buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SliceBenchmark {
+    @Param({"256x256x113", "512x512x256"})
+    public String size;
+
+    @Param({"linear", "bricked"})
+    public String layout;
+
+    private RenderEngine engine;
+    private SliceRenderer renderer;
+    private Volume volume;
+    private int[] topPixels, frontPixels, sidePixels;
+
+    @Setup
+    public void setUp() {
+        Volume linear = SyntheticVolumes.syntheticHead(size, 1);
+        volume = "linear".equals(layout) ? linear : new BrickedVolume(linear, BrickedVolume.DEFAULT_BRICK_SIZE);
+        engine = new RenderEngine();
+        renderer = new SliceRenderer(volume, engine);
+        topPixels = new int[View.TOP_DOWN.width(volume) * View.TOP_DOWN.height(volume)];
+        frontPixels = new int[View.FRONT_BACK.width(volume) * View.FRONT_BACK.height(volume)];
+        sidePixels = new int[View.SIDE_TO_SIDE.width(volume) * View.SIDE_TO_SIDE.height(volume)];
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public int[] topDownSlices() {
+        renderer.render(View.TOP_DOWN, View.TOP_DOWN.depth(volume) / 2, topPixels);
+        return topPixels;
+    }
+
+    @Benchmark
+    public int[] frontBackSlices() {
+        renderer.render(View.FRONT_BACK, View.FRONT_BACK.depth(volume) / 2, frontPixels);
+        return frontPixels;
+    }
+
+    @Benchmark
+    public int[] sideToSideSlices() {
+        renderer.render(View.SIDE_TO_SIDE, View.SIDE_TO_SIDE.depth(volume) / 2, sidePixels);
+        return sidePixels;
+    }
+}
@@ -0,0 +1,73 @@
+package cthead.benchmarks;
+
+import cthead.LinearVolume;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * This class makes volumes for the benchmarks so that no CT file is needed.
+ */
+final class SyntheticVolumes {
+    private SyntheticVolumes() {
+    }
+
+    /**
+     * Makes a volume that looks enough like a CT head for the renderer: air outside, a shell of
+     * skin and bone, and soft tissue inside, with some noise.
+     * @param size the dimensions written as WIDTHxHEIGHTxDEPTH, e.g. 256x256x113.
+     * @param seed the random seed, so runs can be compared.
+     */
+    static LinearVolume syntheticHead(String size, long seed) {
+        String[] dims = size.split("x");
+        int width = Integer.parseInt(dims[0]), height = Integer.parseInt(dims[1]), depth = Integer.parseInt(dims[2]);
+        Random random = new Random(seed);
+        short[] data = new short[width * height * depth];
+        short min = Short.MAX_VALUE, max = Short.MIN_VALUE;
+        int index = 0;
+        for (int z = 0; z < depth; z++) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++, index++) {
+                    double dx = (x - width / 2.0) / (width / 2.0);
+                    double dy = (y - height / 2.0) / (height / 2.0);
+                    double dz = (z - depth / 2.0) / (depth / 2.0);
+                    double r = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    short value;
+                    if (r > 0.9) {
+                        value = (short) (-1000 + random.nextInt(50));
+                    } else if (r > 0.85) {
+                        value = (short) (-100 + random.nextInt(120));
+                    } else if (r > 0.78) {
+                        value = (short) (600 + random.nextInt(1200));
+                    } else {
+                        value = (short) (20 + random.nextInt(60));
+                    }
+                    data[index] = value;
+                    min = (short) Math.min(min, value);
+                    max = (short) Math.max(max, value);
+                }
+            }
+        }
+        return new LinearVolume(data, width, height, depth, min, max);
+    }
+
+    /**
+     * Writes a volume as a raw little-endian file like CThead.
+     */
+    static void writeRaw(LinearVolume volume, Path path) throws IOException {
+        short[] data = volume.data();
+        ByteBuffer bytes = ByteBuffer.allocate(data.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asShortBuffer().put(data);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package cthead.cli;
+
+import cthead.BrickMap;
+import cthead.GradientVolume;
+import cthead.ProgressiveRenderer;
+import cthead.RenderEngine;
+import cthead.RenderStats;
+import cthead.Shading;
+import cthead.SliceRenderer;
+import cthead.TransferFunction;
+import cthead.View;
+import cthead.Volume;
+import cthead.VolumeOptions;
+import cthead.VolumeRenderer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class renders a list of frames to image files without any UI. A fixed number of workers take
+ * frames off the list in turn, each rendering into its own pixel buffer and writing the file before
+ * taking the next, so at most that many frames are held in memory however long the list is. While one
+ * worker encodes a file the others keep the render threads busy.
+ * <p>
+ * Each worker has its own volume renderer, as the transfer table changes with the skin opacity, but
+ * they all share the volume, its brick map, its normals and the render engine.
+ * <p>
+ * Volume renders may be made from a smaller copy of the volume, every 2^level voxels, and scaled up to
+ * the full size image. Slices always come from the volume itself.
+ */
+public class BatchRenderer {
+    private final Volume volume;
+    private final Volume renderVolume;
+    private final int renderLevel;
+    private final BrickMap bricks;
+    private final GradientVolume gradients;
+    private final RenderEngine engine;
+    private final SliceRenderer sliceRenderer;
+    private final VolumeOptions options;
+    private final int workers;
+    private final RenderStats stats;
+
+    /**
+     * @param volume the volume to render.
+     * @param engine runs the rows of each frame in parallel.
+     * @param options the window/level, epsilon, step and shading settings to render with.
+     * @param workers how many frames may be rendered or written at once.
+     * @param stats counts the time each slice and volume render takes.
+     */
+    public BatchRenderer(Volume volume, RenderEngine engine, VolumeOptions options, int workers, RenderStats stats) {
+        this(volume, volume, 0, engine, options, workers, stats);
+    }
+
+    /**
+     * @param volume the volume to slice.
+     * @param renderVolume the volume to make volume renders from, every 2^renderLevel voxels of volume.
+     * @param renderLevel log2 of the distance between the samples of renderVolume.
+     * @param engine runs the rows of each frame in parallel.
+     * @param options the window/level, epsilon, step and shading settings to render with.
+     * @param workers how many frames may be rendered or written at once.
+     * @param stats counts the time each slice and volume render takes.
+     */
+    public BatchRenderer(Volume volume, Volume renderVolume, int renderLevel, RenderEngine engine,
+                         VolumeOptions options, int workers, RenderStats stats) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Need at least one worker, not " + workers);
+        }
+        this.volume = volume;
+        this.renderVolume = renderVolume;
+        this.renderLevel = renderLevel;
+        this.bricks = options.bricks(renderVolume);
+        this.engine = engine;
+        this.gradients = options.shaded() ? options.gradients(renderVolume, engine) : null;
+        this.options = options;
+        this.workers = workers;
+        this.stats = stats;
+        this.sliceRenderer = new SliceRenderer(volume, engine);
+        options.configure(sliceRenderer);
+    }
+
+    /**
+     * @return the normals shaded frames use, null if shading is off or they did not fit in the budget.
+     */
+    public GradientVolume gradients() {
+        return gradients;
+    }
+
+    /**
+     * Renders every frame and writes it to the output directory. If a file cannot be written the
+     * workers stop taking new frames and the first error is thrown.
+     * @param frames the frames to render, frames with the same skin opacity are best kept together.
+     * @param directory where the images go.
+     * @param prefix the start of every file name.
+     * @param format the image file format.
+     * @return the number of frames written.
+     */
+    public int render(List<Frame> frames, Path directory, String prefix, ImageFormat format)
+            throws IOException, InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        int threads = Math.min(workers, Math.max(1, frames.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    Worker worker = new Worker();
+                    int written = 0;
+                    for (int f = next.getAndIncrement(); f < frames.size() && !failed.get(); f = next.getAndIncrement()) {
+                        Frame frame = frames.get(f);
+                        try {
+                            worker.render(frame, directory.resolve(frame.fileName(prefix, format)), format);
+                        } catch (IOException | RuntimeException e) {
+                            failed.set(true);
+                            throw e;
+                        }
+                        written++;
+                    }
+                    return written;
+                }));
+            }
+            int written = 0;
+            for (Future<Integer> result : results) {
+                try {
+                    written += result.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IllegalStateException("Rendering failed", e.getCause());
+                }
+            }
+            return written;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private final class Worker {
+        private final int[] pixels;
+        // the render before it is scaled up, unused if renders are made from the volume itself.
+        private final int[] small;
+        private final VolumeRenderer volumeRenderer;
+
+        Worker() {
+            int largest = 0, largestSmall = 0;
+            for (View view : View.values()) {
+                largest = Math.max(largest, view.width(volume) * view.height(volume));
+                largestSmall = Math.max(largestSmall, view.width(renderVolume) * view.height(renderVolume));
+            }
+            pixels = new int[largest];
+            small = renderLevel == 0 ? pixels : new int[largestSmall];
+            volumeRenderer = new VolumeRenderer(renderVolume, bricks, engine, TransferFunction.ctHead(0),
+                    1 << renderLevel);
+            options.configure(volumeRenderer);
+            volumeRenderer.setShading(gradients, Shading.DEFAULT);
+            volumeRenderer.setStats(stats);
+        }
+
+        void render(Frame frame, Path path, ImageFormat format) throws IOException {
+            View view = frame.view();
+            if (frame.isSlice()) {
+                stats.time(RenderStats.Stage.SLICE,
+                        () -> sliceRenderer.render(view, frame.slice(), pixels, () -> false));
+            } else {
+                volumeRenderer.setTransferFunction(TransferFunction.ctHead(frame.skinOpacity()));
+                stats.time(RenderStats.Stage.COMPOSITE, () -> volumeRenderer.render(view, small, () -> false));
+                if (renderLevel > 0) {
+                    ProgressiveRenderer.upscale(small, view.width(renderVolume), renderLevel, pixels,
+                            view.width(volume), view.height(volume));
+                }
+            }
+            format.write(pixels, view.width(volume), view.height(volume), path);
+        }
+    }
+}
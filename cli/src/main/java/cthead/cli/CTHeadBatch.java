@@ -0,0 +1,154 @@
+package cthead.cli;
+
+import cthead.RenderEngine;
+import cthead.RenderStats;
+import cthead.StreamingVolume;
+import cthead.View;
+import cthead.Volume;
+import cthead.VolumeOptions;
+import cthead.VolumeStreamer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders slices and volume renders of a volume straight to image files, with no display needed.
+ * As well as the volume parameters of VolumeOptions it takes:
+ * <ul>
+ * <li>--views= the views to render, e.g. top_down,front_back, all three by default.</li>
+ * <li>--slices= slice indices and ranges, e.g. 0,76,100-112, or all.</li>
+ * <li>--opacities= skin opacities to volume render, e.g. 0,0.12,0.5.</li>
+ * <li>--format= png or ppm, png by default.</li>
+ * <li>--out= the output directory and --prefix= the start of each file name, the volume file name by default.</li>
+ * <li>--workers= how many frames are in flight at once, one per core by default.</li>
+ * <li>--stats= a JSON file to write the timings, ray counts and allocations to, which are also printed along
+ *     with how the --cache= file was opened.</li>
+ * </ul>
+ */
+public class CTHeadBatch {
+    private static final String USAGE = "usage: java -jar cthead-batch.jar --file=CThead [--width=256 --height=256"
+            + " --depth=113] [--views=top_down,front_back,side_to_side] [--slices=0,76,100-112|all]"
+            + " [--opacities=0.12,0.5] [--shading=phong] [--format=png|ppm] [--out=.] [--prefix=name] [--workers=n]"
+            + " [--stats=stats.json]";
+
+    private CTHeadBatch() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        VolumeOptions options = VolumeOptions.parse(args);
+        if (!options.has("slices") && !options.has("opacities")) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        RenderStats stats = new RenderStats();
+        long loadStart = System.nanoTime();
+        long loadAllocated = RenderStats.allocatedBytes();
+        Volume volume = options.load();
+        // a streamed volume is read through once for a copy that fits the budget to make volume renders from.
+        Volume renderVolume = volume;
+        int renderLevel = 0;
+        if (volume instanceof StreamingVolume && options.has("opacities")) {
+            VolumeStreamer streamer = new VolumeStreamer((StreamingVolume) volume,
+                    VolumeStreamer.DEFAULT_OVERVIEW_VOXELS, options.streamCacheBytes());
+            streamer.run();
+            renderVolume = streamer.renderVolume();
+            renderLevel = streamer.renderLevel();
+        }
+        stats.record(RenderStats.Stage.LOAD, System.nanoTime() - loadStart,
+                RenderStats.allocatedBytes() - loadAllocated);
+        List<Frame> frames;
+        ImageFormat format;
+        try {
+            frames = frames(volume, options);
+            format = ImageFormat.valueOf(options.get("format", "png").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        Path directory = Paths.get(options.get("out", "."));
+        Files.createDirectories(directory);
+        String prefix = options.get("prefix", options.file().getFileName().toString());
+
+        RenderEngine engine = new RenderEngine();
+        engine.setStats(stats);
+        try {
+            BatchRenderer renderer = new BatchRenderer(volume, renderVolume, renderLevel, engine, options,
+                    options.getInt("workers", Runtime.getRuntime().availableProcessors()), stats);
+            if (options.shaded()) {
+                System.out.println(options.describe(renderer.gradients()));
+            }
+            long start = System.nanoTime();
+            int written = renderer.render(frames, directory, prefix, format);
+            System.out.printf(Locale.ROOT, "wrote %d frames to %s in %.2f s%n", written, directory,
+                    (System.nanoTime() - start) / 1e9);
+            if (options.has("stats")) {
+                System.out.println(stats.summary());
+                if (options.cache() != null) {
+                    System.out.println(options.cache());
+                }
+                stats.writeJson(Paths.get(options.get("stats", "")));
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * Lists the frames asked for, slices first then volume renders grouped by opacity so a worker
+     * rarely has to rebuild its transfer table.
+     */
+    static List<Frame> frames(Volume volume, VolumeOptions options) {
+        List<View> views = new ArrayList<>();
+        for (String name : options.get("views", "top_down,front_back,side_to_side").split(",")) {
+            views.add(View.valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+        }
+        List<Frame> frames = new ArrayList<>();
+        if (options.has("slices")) {
+            for (View view : views) {
+                for (int slice : slices(options.get("slices", ""), view.depth(volume))) {
+                    frames.add(Frame.slice(view, slice));
+                }
+            }
+        }
+        if (options.has("opacities")) {
+            for (String opacity : options.get("opacities", "").split(",")) {
+                for (View view : views) {
+                    frames.add(Frame.volumeRender(view, Double.parseDouble(opacity.trim())));
+                }
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Reads a list of slice indices and ranges such as 0,76,100-112, or all for every slice.
+     */
+    static List<Integer> slices(String spec, int depth) {
+        List<Integer> slices = new ArrayList<>();
+        if ("all".equals(spec)) {
+            for (int s = 0; s < depth; s++) {
+                slices.add(s);
+            }
+            return slices;
+        }
+        for (String part : spec.split(",")) {
+            int dash = part.indexOf('-', 1);
+            int from = Integer.parseInt(part.substring(0, dash < 0 ? part.length() : dash).trim());
+            int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+            if (from < 0 || to >= depth || from > to) {
+                throw new IllegalArgumentException("Slice " + part + " is outside 0-" + (depth - 1));
+            }
+            for (int s = from; s <= to; s++) {
+                slices.add(s);
+            }
+        }
+        return slices;
+    }
+}
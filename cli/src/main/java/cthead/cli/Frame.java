@@ -0,0 +1,60 @@
+package cthead.cli;
+
+import cthead.View;
+
+import java.util.Locale;
+
+/**
+ * One image for the batch renderer to make: either a slice or a volume render of a view.
+ */
+public final class Frame {
+    private final View view;
+    private final int slice;
+    private final double skinOpacity;
+
+    private Frame(View view, int slice, double skinOpacity) {
+        this.view = view;
+        this.slice = slice;
+        this.skinOpacity = skinOpacity;
+    }
+
+    /**
+     * @return a frame showing one slice of the view.
+     */
+    public static Frame slice(View view, int slice) {
+        return new Frame(view, slice, Double.NaN);
+    }
+
+    /**
+     * @return a frame showing a volume render of the view with the given skin opacity.
+     */
+    public static Frame volumeRender(View view, double skinOpacity) {
+        return new Frame(view, -1, skinOpacity);
+    }
+
+    public View view() {
+        return view;
+    }
+
+    public boolean isSlice() {
+        return slice >= 0;
+    }
+
+    public int slice() {
+        return slice;
+    }
+
+    public double skinOpacity() {
+        return skinOpacity;
+    }
+
+    /**
+     * @return a file name that tells the frames of a batch apart, e.g. CThead-top_down-slice076.png.
+     */
+    public String fileName(String prefix, ImageFormat format) {
+        String name = view.name().toLowerCase(Locale.ROOT);
+        return isSlice()
+                ? String.format(Locale.ROOT, "%s-%s-slice%03d.%s", prefix, name, slice, format.extension())
+                : String.format(Locale.ROOT, "%s-%s-opacity%.3f.%s", prefix, name, skinOpacity, format.extension());
+    }
+}
@@ -0,0 +1,69 @@
+package cthead.cli;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+
+/**
+ * The file formats the batch renderer can write. Both take the opaque ARGB pixels the renderers produce.
+ */
+public enum ImageFormat {
+    PNG("png") {
+        @Override
+        public void write(int[] pixels, int width, int height, Path path) throws IOException {
+            // wraps the pixel array rather than copying it, the alpha byte is ignored.
+            DirectColorModel rgb = new DirectColorModel(24, 0xff0000, 0xff00, 0xff);
+            WritableRaster raster = Raster.createWritableRaster(
+                    new SinglePixelPackedSampleModel(DataBufferInt.TYPE_INT, width, height, rgb.getMasks()),
+                    new DataBufferInt(pixels, width * height), null);
+            if (!ImageIO.write(new BufferedImage(rgb, raster, false, null), "png", path.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+    },
+    PPM("ppm") {
+        @Override
+        public void write(int[] pixels, int width, int height, Path path) throws IOException {
+            byte[] rgb = new byte[width * height * 3];
+            for (int p = 0, b = 0; p < width * height; p++) {
+                int argb = pixels[p];
+                rgb[b++] = (byte) (argb >> 16);
+                rgb[b++] = (byte) (argb >> 8);
+                rgb[b++] = (byte) argb;
+            }
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+                out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(rgb);
+            }
+        }
+    };
+
+    private final String extension;
+
+    ImageFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return the file name extension, without the dot.
+     */
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * Writes an image to a file, replacing it if it is already there.
+     * @param pixels the ARGB pixels in row order, at least width * height long.
+     */
+    public abstract void write(int[] pixels, int width, int height, Path path) throws IOException;
+}
@@ -0,0 +1,96 @@
+package cthead.cli;
+
+import cthead.RenderEngine;
+import cthead.RenderStats;
+import cthead.StreamingVolume;
+import cthead.View;
+import cthead.VolumeOptions;
+import cthead.VolumeStreamer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Volume renders of a streamed volume bigger than its memory budget must finish in bounded time, which
+ * they only do if they are made from the in-memory copy rather than by reading slabs in for every ray.
+ */
+class StreamingRenderTest {
+    private static final int WIDTH = 256, HEIGHT = 256, DEPTH = 512;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rendersVolumeLargerThanBudget() throws IOException {
+        Path file = directory.resolve("sphere");
+        writeSphere(file);
+        VolumeOptions options = VolumeOptions.parse(new String[] {"--file=" + file, "--width=" + WIDTH,
+                "--height=" + HEIGHT, "--depth=" + DEPTH, "--layout=stream", "--streamCache=16"});
+        assertTrue(Files.size(file) > 2 * options.streamCacheBytes());
+
+        RenderEngine engine = new RenderEngine();
+        try (StreamingVolume volume = (StreamingVolume) options.load()) {
+            assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                VolumeStreamer streamer = new VolumeStreamer(volume, VolumeStreamer.DEFAULT_OVERVIEW_VOXELS,
+                        options.streamCacheBytes());
+                streamer.run();
+                assertTrue((long) streamer.renderVolume().width() * streamer.renderVolume().height()
+                        * streamer.renderVolume().depth() * Short.BYTES <= options.streamCacheBytes());
+                BatchRenderer renderer = new BatchRenderer(volume, streamer.renderVolume(), streamer.renderLevel(),
+                        engine, options, 1, new RenderStats());
+                assertEquals(1, renderer.render(List.of(Frame.volumeRender(View.TOP_DOWN, 0.0)), directory,
+                        "sphere", ImageFormat.PPM));
+            });
+            assertEquals(0, volume.loads(), "volume renders read slabs of the streamed volume");
+        } finally {
+            engine.shutdown();
+        }
+
+        byte[] image = Files.readAllBytes(directory.resolve(
+                Frame.volumeRender(View.TOP_DOWN, 0.0).fileName("sphere", ImageFormat.PPM)));
+        byte background = image[image.length - 1];
+        boolean drawn = false;
+        for (int i = image.length - WIDTH * HEIGHT * 3; i < image.length && !drawn; i++) {
+            drawn = image[i] != background;
+        }
+        assertTrue(drawn, "the bone shell was not drawn");
+    }
+
+    /**
+     * Writes a volume of air with a shell of bone-valued voxels, slice by slice.
+     */
+    private static void writeSphere(Path file) throws IOException {
+        ByteBuffer slice = ByteBuffer.allocate(WIDTH * HEIGHT * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            for (int z = 0; z < DEPTH; z++) {
+                slice.clear();
+                for (int y = 0; y < HEIGHT; y++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        double dx = (x - WIDTH / 2.0) / (WIDTH / 2.0);
+                        double dy = (y - HEIGHT / 2.0) / (HEIGHT / 2.0);
+                        double dz = (z - DEPTH / 2.0) / (DEPTH / 2.0);
+                        double r = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                        slice.putShort((short) (r > 0.8 && r < 0.9 ? 1500 : -1000));
+                    }
+                }
+                slice.flip();
+                while (slice.hasRemaining()) {
+                    channel.write(slice);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package cthead;
+
+/**
+ * This class works out where each voxel of a bricked volume is stored, for BrickedVolume and
+ * MappedBrickedVolume. Inside a brick the voxels are x fastest, and the bricks themselves are in Morton
+ * (Z-order) order of their brick coordinates. Edge bricks are padded out to the full brick size.
+ * <p>
+ * Finding a voxel takes three small per-axis tables: each holds, for a coordinate, the Morton bits of
+ * its brick above the offset inside the brick. The three entries are ORed together, the brick bits are
+ * mapped to the position of the brick and the offset is added.
+ */
+final class BrickLayout {
+    private final int brickSize;
+    private final int innerBits;
+    private final int innerMask;
+    private final int length;
+    private final int[] xCode;
+    private final int[] yCode;
+    private final int[] zCode;
+    // the position of the brick with each Morton code, -1 for codes outside the volume.
+    private final int[] brickOrder;
+
+    /**
+     * @param brickSize the edge length of a brick, a power of two.
+     */
+    BrickLayout(int width, int height, int depth, int brickSize) {
+        if (brickSize < 2 || Integer.bitCount(brickSize) != 1) {
+            throw new IllegalArgumentException("The brick size must be a power of two, not " + brickSize);
+        }
+        int shift = Integer.numberOfTrailingZeros(brickSize);
+        this.brickSize = brickSize;
+        this.innerBits = 3 * shift;
+        this.innerMask = (1 << innerBits) - 1;
+
+        int bricksX = (width + brickSize - 1) >> shift;
+        int bricksY = (height + brickSize - 1) >> shift;
+        int bricksZ = (depth + brickSize - 1) >> shift;
+        int codeBits = 32 - Integer.numberOfLeadingZeros(Math.max(Math.max(bricksX, bricksY), bricksZ) - 1);
+        if (3 * codeBits + innerBits > 30) {
+            throw new IllegalArgumentException("Volume too large for bricks of " + brickSize);
+        }
+
+        this.xCode = axisCodes(width, shift, 0, 1);
+        this.yCode = axisCodes(height, shift, 1, brickSize);
+        this.zCode = axisCodes(depth, shift, 2, brickSize * brickSize);
+
+        // number the bricks that exist in Morton order.
+        this.brickOrder = new int[1 << (3 * codeBits)];
+        int bricks = 0;
+        for (int code = 0; code < brickOrder.length; code++) {
+            int bx = compact(code), by = compact(code >>> 1), bz = compact(code >>> 2);
+            brickOrder[code] = bx < bricksX && by < bricksY && bz < bricksZ ? bricks++ : -1;
+        }
+        this.length = bricks << innerBits;
+    }
+
+    /**
+     * Works out the table entry of every coordinate along one axis.
+     * @param size the number of voxels along the axis.
+     * @param shift log2 of the brick size.
+     * @param axis which bit of each Morton triple this axis uses.
+     * @param innerStride how far apart neighbouring voxels along the axis are inside a brick.
+     */
+    private int[] axisCodes(int size, int shift, int axis, int innerStride) {
+        int[] codes = new int[size];
+        for (int c = 0; c < size; c++) {
+            codes[c] = (spread(c >>> shift) << axis << innerBits) | ((c & (brickSize - 1)) * innerStride);
+        }
+        return codes;
+    }
+
+    /**
+     * Puts two zero bits between each bit of value, the Morton spacing for three axes.
+     */
+    private static int spread(int value) {
+        int spread = 0;
+        for (int bit = 0; bit < 10; bit++) {
+            spread |= ((value >>> bit) & 1) << (3 * bit);
+        }
+        return spread;
+    }
+
+    /**
+     * Undoes spread() on every third bit of code.
+     */
+    private static int compact(int code) {
+        int value = 0;
+        for (int bit = 0; bit < 10; bit++) {
+            value |= ((code >>> (3 * bit)) & 1) << bit;
+        }
+        return value;
+    }
+
+    /**
+     * @return where the voxel (x, y, z) is stored.
+     */
+    int index(int x, int y, int z) {
+        int code = xCode[x] | yCode[y] | zCode[z];
+        return (brickOrder[code >>> innerBits] << innerBits) | (code & innerMask);
+    }
+
+    /**
+     * @return the number of voxels stored, the padding of the edge bricks included.
+     */
+    int length() {
+        return length;
+    }
+
+    int brickSize() {
+        return brickSize;
+    }
+}
@@ -0,0 +1,137 @@
+package cthead;
+
+import java.util.Arrays;
+
+/**
+ * This class splits a volume into cubic bricks and remembers the min and max voxel of each brick.
+ * A renderer can then tell from two numbers whether a whole brick is invisible under the current
+ * transfer function and skip it without reading its voxels.
+ * <p>
+ * A brick's range also covers the first voxel of the next brick along each axis, because a sample
+ * interpolated anywhere inside the brick can read that far. A brick found empty is therefore empty
+ * for trilinear samples as well as for samples on the voxels themselves.
+ */
+public class BrickMap implements Grid {
+    public static final int DEFAULT_BRICK_SIZE = 8;
+
+    private final int brickSize;
+    private final int brickShift;
+    private final int bricksX;
+    private final int bricksY;
+    private final int bricksZ;
+    private final short[] min;
+    private final short[] max;
+
+    /**
+     * Works out the min and max of every brick in one pass over the volume.
+     * @param volume the volume to split up.
+     * @param brickSize the edge length of a brick in voxels, a power of two. The last brick along an
+     *                  axis may be smaller.
+     */
+    public BrickMap(Volume volume, int brickSize) {
+        if (brickSize < 2 || Integer.bitCount(brickSize) != 1) {
+            throw new IllegalArgumentException("The brick size must be a power of two, not " + brickSize);
+        }
+        this.brickSize = brickSize;
+        this.brickShift = Integer.numberOfTrailingZeros(brickSize);
+        this.bricksX = (volume.width() + brickSize - 1) / brickSize;
+        this.bricksY = (volume.height() + brickSize - 1) / brickSize;
+        this.bricksZ = (volume.depth() + brickSize - 1) / brickSize;
+        this.min = new short[bricksX * bricksY * bricksZ];
+        this.max = new short[min.length];
+        Arrays.fill(min, Short.MAX_VALUE);
+        Arrays.fill(max, Short.MIN_VALUE);
+
+        int width = volume.width();
+        short[] row = new short[width];
+        // walk the volume a row at a time, folding each run of a row into the bricks that can see it.
+        for (int z = 0; z < volume.depth(); z++) {
+            for (int y = 0; y < volume.height(); y++) {
+                volume.copyRow(y, z, row);
+                for (int bx = 0; bx < bricksX; bx++) {
+                    int start = bx * brickSize;
+                    int end = Math.min(width, (bx + 1) * brickSize + 1);
+                    short runMin = Short.MAX_VALUE;
+                    short runMax = Short.MIN_VALUE;
+                    for (int i = start; i < end; i++) {
+                        runMin = (short) Math.min(runMin, row[i]);
+                        runMax = (short) Math.max(runMax, row[i]);
+                    }
+                    // a row on the first layer of a brick also belongs to the brick before it.
+                    int by = y / brickSize, bz = z / brickSize;
+                    boolean sharedY = by > 0 && y % brickSize == 0;
+                    boolean sharedZ = bz > 0 && z % brickSize == 0;
+                    include(bx, by, bz, runMin, runMax);
+                    if (sharedY) {
+                        include(bx, by - 1, bz, runMin, runMax);
+                    }
+                    if (sharedZ) {
+                        include(bx, by, bz - 1, runMin, runMax);
+                    }
+                    if (sharedY && sharedZ) {
+                        include(bx, by - 1, bz - 1, runMin, runMax);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Wraps brick ranges worked out before, e.g. read back from a VolumeCache.
+     */
+    BrickMap(int brickSize, int bricksX, int bricksY, int bricksZ, short[] min, short[] max) {
+        this.brickSize = brickSize;
+        this.brickShift = Integer.numberOfTrailingZeros(brickSize);
+        this.bricksX = bricksX;
+        this.bricksY = bricksY;
+        this.bricksZ = bricksZ;
+        this.min = min;
+        this.max = max;
+    }
+
+    private void include(int bx, int by, int bz, short low, short high) {
+        int brick = (bz * bricksY + by) * bricksX + bx;
+        min[brick] = (short) Math.min(min[brick], low);
+        max[brick] = (short) Math.max(max[brick], high);
+    }
+
+    /**
+     * @return the edge length of a brick in voxels.
+     */
+    public int brickSize() {
+        return brickSize;
+    }
+
+    /**
+     * @return log2 of the brick size, so voxel x is in brick x >> brickShift().
+     */
+    public int brickShift() {
+        return brickShift;
+    }
+
+    /**
+     * @return the smallest voxel in the brick.
+     */
+    public short min(int brick) {
+        return min[brick];
+    }
+
+    /**
+     * @return the largest voxel in the brick.
+     */
+    public short max(int brick) {
+        return max[brick];
+    }
+
+    /**
+     * @return the total number of bricks.
+     */
+    public int count() {
+        return min.length;
+    }
+
+    @Override
+    public int size(int axis) {
+        return axis == 0 ? bricksX : axis == 1 ? bricksY : bricksZ;
+    }
+}
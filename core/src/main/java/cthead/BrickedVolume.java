@@ -0,0 +1,77 @@
+package cthead;
+
+/**
+ * This class holds a volume as cubic bricks in one flat array. Inside a brick the voxels are stored x
+ * fastest, and the bricks themselves are stored in Morton (Z-order) order of their brick coordinates,
+ * so bricks that are close in space are close in memory whichever axis you move along. A ray or slice
+ * along z then touches about as many cache lines as one along x. BrickLayout works out where each voxel
+ * lives.
+ */
+public class BrickedVolume extends Volume {
+    public static final int DEFAULT_BRICK_SIZE = 16;
+
+    private final BrickLayout layout;
+    private final short[] data;
+
+    /**
+     * Copies a volume into bricks.
+     * @param source the volume to copy.
+     * @param brickSize the edge length of a brick, a power of two.
+     */
+    public BrickedVolume(Volume source, int brickSize) {
+        super(source.width(), source.height(), source.depth(), source.min(), source.max());
+        this.layout = new BrickLayout(width(), height(), depth(), brickSize);
+        this.data = new short[layout.length()];
+
+        short[] row = new short[width()];
+        for (int z = 0; z < depth(); z++) {
+            for (int y = 0; y < height(); y++) {
+                source.copyRow(y, z, row);
+                for (int x = 0; x < width(); x += brickSize) {
+                    System.arraycopy(row, x, data, layout.index(x, y, z), Math.min(brickSize, width() - x));
+                }
+            }
+        }
+    }
+
+    /**
+     * Wraps an already filled array of bricks.
+     * @param data the voxels in the order data() returns them, e.g. decoded from a VolumeCache.
+     * @param brickSize the edge length of a brick, a power of two.
+     */
+    BrickedVolume(short[] data, int width, int height, int depth, short min, short max, int brickSize) {
+        super(width, height, depth, min, max);
+        this.layout = new BrickLayout(width, height, depth, brickSize);
+        if (data.length != layout.length()) {
+            throw new IllegalArgumentException("Expected " + layout.length() + " voxels but got " + data.length);
+        }
+        this.data = data;
+    }
+
+    @Override
+    public short get(int x, int y, int z) {
+        return data[layout.index(x, y, z)];
+    }
+
+    @Override
+    public void copyRow(int y, int z, short[] row) {
+        int brickSize = layout.brickSize();
+        for (int x = 0; x < width(); x += brickSize) {
+            System.arraycopy(data, layout.index(x, y, z), row, x, Math.min(brickSize, width() - x));
+        }
+    }
+
+    /**
+     * @return the edge length of a brick.
+     */
+    public int brickSize() {
+        return layout.brickSize();
+    }
+
+    /**
+     * @return the backing array, the bricks in Morton order, each x fastest and padded to the full size.
+     */
+    public short[] data() {
+        return data;
+    }
+}
@@ -0,0 +1,168 @@
+package cthead;
+
+import java.util.Arrays;
+
+/**
+ * This class describes where the volume is looked at from. Positions are in voxel coordinates, the
+ * centre of voxel (x, y, z) being at (x, y, z). An image column steps along the right vector, a row
+ * steps along the down vector and rays go along the forward vector.
+ * <p>
+ * An orthographic camera sends parallel rays from a grid of points around its position, pixelSize apart.
+ * A perspective camera sends every ray out of its position, spread over the vertical field of view.
+ */
+public class Camera {
+    /**
+     * How rays leave the camera.
+     */
+    public enum Projection {
+        ORTHOGRAPHIC,
+        PERSPECTIVE
+    }
+
+    final Projection projection;
+    final int width;
+    final int height;
+    // position, right, down and forward as x, y, z triples.
+    final double px, py, pz;
+    final double rx, ry, rz;
+    final double dx, dy, dz;
+    final double fx, fy, fz;
+    // orthographic: voxels per pixel, perspective: tan of half the field of view per half image height.
+    final double scale;
+
+    /**
+     * Makes a camera from explicit axes. The axes should be unit length and at right angles.
+     * @param projection orthographic or perspective.
+     * @param position the centre of the image for orthographic, the eye for perspective.
+     * @param right the direction of increasing image column.
+     * @param down the direction of increasing image row.
+     * @param forward the viewing direction.
+     * @param width width of the image in pixels.
+     * @param height height of the image in pixels.
+     * @param scale voxels per pixel for orthographic, vertical field of view in degrees for perspective.
+     */
+    public Camera(Projection projection, double[] position, double[] right, double[] down, double[] forward,
+                  int width, int height, double scale) {
+        this.projection = projection;
+        this.width = width;
+        this.height = height;
+        this.px = position[0];
+        this.py = position[1];
+        this.pz = position[2];
+        this.rx = right[0];
+        this.ry = right[1];
+        this.rz = right[2];
+        this.dx = down[0];
+        this.dy = down[1];
+        this.dz = down[2];
+        this.fx = forward[0];
+        this.fy = forward[1];
+        this.fz = forward[2];
+        this.scale = projection == Projection.ORTHOGRAPHIC ? scale
+                : Math.tan(Math.toRadians(scale) / 2) / (height / 2.0);
+    }
+
+    /**
+     * Makes a camera at eye looking at target, with up roughly towards the top of the image.
+     * @param projection orthographic or perspective.
+     * @param eye where the camera is.
+     * @param target the point in the middle of the image.
+     * @param up which way is up, must not be parallel to the viewing direction.
+     * @param width width of the image in pixels.
+     * @param height height of the image in pixels.
+     * @param scale voxels per pixel for orthographic, vertical field of view in degrees for perspective.
+     */
+    public static Camera lookAt(Projection projection, double[] eye, double[] target, double[] up,
+                                int width, int height, double scale) {
+        double[] forward = normalise(new double[] {target[0] - eye[0], target[1] - eye[1], target[2] - eye[2]});
+        double[] right = normalise(cross(forward, up));
+        double[] down = cross(forward, right);
+        return new Camera(projection, eye, right, down, forward, width, height, scale);
+    }
+
+    /**
+     * The orthographic camera that gives the axis aligned view of a volume: one pixel per voxel,
+     * every ray going straight through the centres of a column of voxels.
+     * @param view which way to look through the volume.
+     * @param volume the volume, for its size.
+     */
+    public static Camera of(View view, Grid volume) {
+        double[] right = new double[3], down = new double[3], forward = new double[3];
+        right[view.uAxis] = 1;
+        down[view.vAxis] = 1;
+        forward[view.wAxis] = 1;
+
+        int width = view.width(volume), height = view.height(volume);
+        double[] position = new double[3];
+        position[view.uAxis] = (width - 1) / 2.0;
+        position[view.vAxis] = (height - 1) / 2.0;
+        // start a voxel in front of the volume, so the first sample is exactly on slice 0.
+        position[view.wAxis] = -1;
+        return new Camera(Projection.ORTHOGRAPHIC, position, right, down, forward, width, height, 1);
+    }
+
+    /**
+     * Works out the ray through the centre of a pixel, the direction is unit length.
+     * @param i the image column.
+     * @param j the image row.
+     * @param ray filled with the origin x, y, z followed by the direction x, y, z.
+     */
+    public void ray(int i, int j, double[] ray) {
+        double u = (i - (width - 1) / 2.0) * scale;
+        double v = (j - (height - 1) / 2.0) * scale;
+        if (projection == Projection.ORTHOGRAPHIC) {
+            ray[0] = px + u * rx + v * dx;
+            ray[1] = py + u * ry + v * dy;
+            ray[2] = pz + u * rz + v * dz;
+            ray[3] = fx;
+            ray[4] = fy;
+            ray[5] = fz;
+            return;
+        }
+        double x = fx + u * rx + v * dx, y = fy + u * ry + v * dy, z = fz + u * rz + v * dz;
+        double length = Math.sqrt(x * x + y * y + z * z);
+        ray[0] = px;
+        ray[1] = py;
+        ray[2] = pz;
+        ray[3] = x / length;
+        ray[4] = y / length;
+        ray[5] = z / length;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Two cameras are equal when they send exactly the same rays.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Camera)) {
+            return false;
+        }
+        Camera c = (Camera) other;
+        return projection == c.projection && width == c.width && height == c.height && scale == c.scale
+                && px == c.px && py == c.py && pz == c.pz && rx == c.rx && ry == c.ry && rz == c.rz
+                && dx == c.dx && dy == c.dy && dz == c.dz && fx == c.fx && fy == c.fy && fz == c.fz;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new double[] {projection.ordinal(), width, height, scale, px, py, pz,
+                rx, ry, rz, dx, dy, dz, fx, fy, fz});
+    }
+
+    static double[] cross(double[] a, double[] b) {
+        return new double[] {a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0]};
+    }
+
+    static double[] normalise(double[] a) {
+        double length = Math.sqrt(a[0] * a[0] + a[1] * a[1] + a[2] * a[2]);
+        return new double[] {a[0] / length, a[1] / length, a[2] / length};
+    }
+}
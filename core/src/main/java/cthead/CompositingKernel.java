@@ -0,0 +1,20 @@
+package cthead;
+
+/**
+ * The ways the volume renderer can composite the samples of its rays.
+ */
+public enum CompositingKernel {
+    SCALAR,     // one ray at a time in doubles
+    VECTOR;     // a packet of neighbouring rays at a time in float SIMD lanes
+
+    private static final boolean VECTOR_AVAILABLE =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /**
+     * @return whether the vector kernel can run, which needs the JVM started with
+     * --add-modules jdk.incubator.vector.
+     */
+    public static boolean vectorAvailable() {
+        return VECTOR_AVAILABLE;
+    }
+}
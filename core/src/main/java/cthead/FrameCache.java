@@ -0,0 +1,209 @@
+package cthead;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps finished frames so going back to a slice or opacity already shown costs a copy
+ * instead of a render. Frames are dropped least recently used first once their pixels take more than
+ * the budget. Hits, misses and evictions are counted to help pick the budget.
+ * <p>
+ * It can also prefetch frames on a background thread, e.g. the slices either side of the one being
+ * dragged through. Each prefetch request replaces the one before, so only the neighbours of the latest
+ * position are rendered. All methods may be called from any thread.
+ */
+public class FrameCache {
+    // opacities are rounded to this many steps between 0 and 1, so nearby slider positions share a frame.
+    public static final int OPACITY_STEPS = 256;
+
+    private final long budgetBytes;
+    private final LinkedHashMap<Key, int[]> frames = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private final ExecutorService prefetcher;
+    private final AtomicLong prefetchGeneration = new AtomicLong();
+
+    /**
+     * Renders the frame of a key for prefetching.
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        int[] render(Key key);
+    }
+
+    /**
+     * What a frame shows: the view, how it was rendered (e.g. "slice" or "composite"), the slice or
+     * quantized opacity, and the grey window it was shown with.
+     */
+    public static final class Key {
+        private final View view;
+        private final String mode;
+        private final int index;
+        private final double level;
+        private final double window;
+
+        public Key(View view, String mode, int index, double level, double window) {
+            this.view = view;
+            this.mode = mode;
+            this.index = index;
+            this.level = level;
+            this.window = window;
+        }
+
+        public View view() {
+            return view;
+        }
+
+        public String mode() {
+            return mode;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return view == key.view && mode.equals(key.mode) && index == key.index
+                    && level == key.level && window == key.window;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(view, mode, index, level, window);
+        }
+    }
+
+    /**
+     * @param budgetBytes how much memory the cached pixels may take, 0 turns caching off.
+     */
+    public FrameCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        this.prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "frame-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the opacity rounded to one of OPACITY_STEPS, the index of its frames.
+     */
+    public static int quantize(double opacity) {
+        return (int) Math.round(Math.max(0, Math.min(1, opacity)) * OPACITY_STEPS);
+    }
+
+    /**
+     * @return the opacity a quantized index stands for, the one its frames should be rendered with.
+     */
+    public static double opacity(int index) {
+        return index / (double) OPACITY_STEPS;
+    }
+
+    /**
+     * Looks a frame up, counting a hit or a miss.
+     * @return the cached pixels, which must not be changed, or null.
+     */
+    public synchronized int[] get(Key key) {
+        int[] frame = frames.get(key);
+        if (frame == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return frame;
+    }
+
+    /**
+     * @return whether a frame is cached, without counting it or making it recently used.
+     */
+    public synchronized boolean contains(Key key) {
+        return frames.containsKey(key);
+    }
+
+    /**
+     * Keeps a copy of a frame, dropping the least recently used frames to stay in the budget.
+     * @param pixels the frame, only the first length pixels are copied.
+     */
+    public void put(Key key, int[] pixels, int length) {
+        long size = (long) length * Integer.BYTES;
+        if (size > budgetBytes) {
+            return;
+        }
+        int[] frame = Arrays.copyOf(pixels, length);
+        synchronized (this) {
+            int[] old = frames.put(key, frame);
+            bytes += size - (old == null ? 0 : (long) old.length * Integer.BYTES);
+            Iterator<int[]> oldest = frames.values().iterator();
+            while (bytes > budgetBytes) {
+                bytes -= (long) oldest.next().length * Integer.BYTES;
+                oldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Renders the frames that are not cached yet on the background thread, in the order given.
+     * Frames still waiting from an earlier call are given up.
+     */
+    public void prefetch(Collection<Key> keys, Renderer renderer) {
+        if (budgetBytes == 0) {
+            return;
+        }
+        long generation = prefetchGeneration.incrementAndGet();
+        for (Key key : keys) {
+            prefetcher.execute(() -> {
+                if (prefetchGeneration.get() == generation && !contains(key)) {
+                    int[] frame = renderer.render(key);
+                    put(key, frame, frame.length);
+                }
+            });
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the memory held by the cached pixels.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("frames: %d hits, %d misses, %d evictions, %.1f of %.1f MB", hits, misses, evictions,
+                bytes / (double) (1 << 20), budgetBytes / (double) (1 << 20));
+    }
+
+    /**
+     * Stops the prefetch thread.
+     */
+    public void shutdown() {
+        prefetcher.shutdownNow();
+    }
+}
@@ -0,0 +1,182 @@
+package cthead;
+
+/**
+ * This class holds a normal for every voxel, worked out once from the central difference gradient and
+ * quantized to 16 bits. The direction is octahedrally encoded into two bytes, so a normal costs a quarter
+ * of what three floats would and the shading for every possible normal fits in one 64K entry table.
+ * <p>
+ * If a normal per voxel does not fit in the memory budget the normals are kept on a coarser grid, every
+ * stride voxels along each axis, and each sample uses the normal of the nearest grid point.
+ */
+public class GradientVolume implements Grid {
+    // the number of distinct codes, two bytes' worth.
+    public static final int CODES = 1 << 16;
+    // the code of a voxel whose gradient is too small to have a direction, it is lit as if unshaded.
+    public static final int FLAT = CODES - 1;
+    // octahedral coordinates are quantized to 0..254 so that 0 lands on a step, 255 is left for FLAT.
+    private static final int STEPS = 254;
+    // gradients smaller than this, in values per voxel, are FLAT.
+    private static final double MIN_GRADIENT = 1;
+
+    private final char[] codes;
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final int stride;
+
+    private GradientVolume(int width, int height, int depth, int stride) {
+        this(width, height, depth, stride, new char[width * height * depth]);
+    }
+
+    /**
+     * Wraps normals worked out before, e.g. read back from a VolumeCache.
+     * @param codes the codes of the grid points, x fastest.
+     */
+    GradientVolume(int width, int height, int depth, int stride, char[] codes) {
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.stride = stride;
+        this.codes = codes;
+    }
+
+    /**
+     * Works out the normals of a volume in parallel, on the finest grid that fits the budget.
+     * @param volume the volume to take gradients of.
+     * @param engine runs the slices in parallel.
+     * @param budgetBytes the most memory the normals may use.
+     * @return the normals, or null if even a very coarse grid would not fit in the budget.
+     */
+    public static GradientVolume compute(Volume volume, RenderEngine engine, long budgetBytes) {
+        int s = stride(volume, budgetBytes);
+        if (s == 0) {
+            return null;
+        }
+        GradientVolume gradients = new GradientVolume(ceilDiv(volume.width(), s), ceilDiv(volume.height(), s),
+                ceilDiv(volume.depth(), s), s);
+        engine.run(gradients.depth, (from, to) -> gradients.computeSlices(volume, from, to));
+        return gradients;
+    }
+
+    /**
+     * @return the finest stride whose normals fit in the budget, 0 if none do.
+     */
+    public static int stride(Volume volume, long budgetBytes) {
+        int stride = 1;
+        while (bytes(volume, stride) > budgetBytes) {
+            stride *= 2;
+            if (stride > Math.max(volume.width(), Math.max(volume.height(), volume.depth()))) {
+                return 0;
+            }
+        }
+        return stride;
+    }
+
+    /**
+     * @return the memory needed for normals of the volume every stride voxels.
+     */
+    public static long bytes(Volume volume, int stride) {
+        return (long) ceilDiv(volume.width(), stride) * ceilDiv(volume.height(), stride)
+                * ceilDiv(volume.depth(), stride) * Character.BYTES;
+    }
+
+    private void computeSlices(Volume volume, int fromZ, int toZ) {
+        int lastX = volume.width() - 1, lastY = volume.height() - 1, lastZ = volume.depth() - 1;
+        for (int gz = fromZ; gz < toZ; gz++) {
+            int z = gz * stride, zLow = Math.max(z - stride, 0), zHigh = Math.min(z + stride, lastZ);
+            for (int gy = 0; gy < height; gy++) {
+                int y = gy * stride, yLow = Math.max(y - stride, 0), yHigh = Math.min(y + stride, lastY);
+                for (int gx = 0, index = (gz * height + gy) * width; gx < width; gx++, index++) {
+                    int x = gx * stride, xLow = Math.max(x - stride, 0), xHigh = Math.min(x + stride, lastX);
+                    // central differences, one sided at the edges.
+                    double nx = xHigh > xLow ? (double) (volume.get(xHigh, y, z) - volume.get(xLow, y, z)) / (xHigh - xLow) : 0;
+                    double ny = yHigh > yLow ? (double) (volume.get(x, yHigh, z) - volume.get(x, yLow, z)) / (yHigh - yLow) : 0;
+                    double nz = zHigh > zLow ? (double) (volume.get(x, y, zHigh) - volume.get(x, y, zLow)) / (zHigh - zLow) : 0;
+                    codes[index] = (char) encode(nx, ny, nz);
+                }
+            }
+        }
+    }
+
+    /**
+     * Octahedrally encodes a direction, the first coordinate in the high byte.
+     * @return the code, FLAT if the vector is too short to have a direction.
+     */
+    static int encode(double x, double y, double z) {
+        double length = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        if (Math.sqrt(x * x + y * y + z * z) < MIN_GRADIENT) {
+            return FLAT;
+        }
+        double u = x / length, v = y / length;
+        if (z < 0) {
+            double foldedU = (1 - Math.abs(v)) * Math.signum(u);
+            v = (1 - Math.abs(u)) * Math.signum(v);
+            u = foldedU;
+        }
+        int a = (int) Math.round((u * 0.5 + 0.5) * STEPS);
+        int b = (int) Math.round((v * 0.5 + 0.5) * STEPS);
+        return (a << 8) | b;
+    }
+
+    /**
+     * Turns a code back into a unit vector.
+     * @param normal receives x, y and z, or zeros for FLAT and unused codes.
+     * @return whether the code is a direction.
+     */
+    static boolean decode(int code, double[] normal) {
+        int a = code >>> 8, b = code & 0xff;
+        if (a > STEPS || b > STEPS) {
+            normal[0] = normal[1] = normal[2] = 0;
+            return false;
+        }
+        double u = a * 2.0 / STEPS - 1, v = b * 2.0 / STEPS - 1;
+        double w = 1 - Math.abs(u) - Math.abs(v);
+        if (w < 0) {
+            double unfoldedU = (1 - Math.abs(v)) * Math.signum(u);
+            v = (1 - Math.abs(u)) * Math.signum(v);
+            u = unfoldedU;
+        }
+        double length = Math.sqrt(u * u + v * v + w * w);
+        normal[0] = u / length;
+        normal[1] = v / length;
+        normal[2] = w / length;
+        return true;
+    }
+
+    /**
+     * @return the code of the normal at a grid point, see stride() for how it maps to voxels.
+     */
+    public int code(int x, int y, int z) {
+        return codes[(z * height + y) * width + x];
+    }
+
+    /**
+     * @return how many voxels apart the grid points are along each axis, 1 for a normal per voxel.
+     */
+    public int stride() {
+        return stride;
+    }
+
+    /**
+     * @return the codes of every grid point, x fastest, which must not be changed.
+     */
+    char[] codes() {
+        return codes;
+    }
+
+    /**
+     * @return the memory used by the normals.
+     */
+    public long bytes() {
+        return (long) codes.length * Character.BYTES;
+    }
+
+    @Override
+    public int size(int axis) {
+        return axis == 0 ? width : axis == 1 ? height : depth;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
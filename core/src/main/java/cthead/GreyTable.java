@@ -0,0 +1,55 @@
+package cthead;
+
+/**
+ * The window/level mapping from voxel value to grey, worked out once for every value from min to max
+ * so each pixel is one table load. Shared by the slices and the intensity projections so both show
+ * values the same way.
+ */
+public class GreyTable {
+    private final int min;
+    private final int[] greys;
+    private double level;
+    private double window;
+
+    /**
+     * Creates a table whose window covers the whole range from min to max.
+     */
+    public GreyTable(int min, int max) {
+        this.min = min;
+        this.greys = new int[max - min + 1];
+        setWindow((min + max) / 2.0, max - min);
+    }
+
+    /**
+     * Changes the window/level. Values below level - window / 2 are black, values above
+     * level + window / 2 are white and values in between are a linear ramp of grey.
+     * This must not be called while an image is being rendered.
+     * @param level the value in the middle of the grey ramp.
+     * @param window the width of the grey ramp.
+     */
+    public void setWindow(double level, double window) {
+        this.level = level;
+        this.window = window;
+        double low = level - window / 2;
+        for (int e = 0; e < greys.length; e++) {
+            double col = window > 0 ? (e + min - low) / window : (e + min >= level ? 1 : 0);
+            int grey = (int) (Math.max(0, Math.min(1, col)) * 255 + 0.5);
+            greys[e] = 0xff000000 | (grey << 16) | (grey << 8) | grey;
+        }
+    }
+
+    public double level() {
+        return level;
+    }
+
+    public double window() {
+        return window;
+    }
+
+    /**
+     * @return the opaque ARGB grey of a value between min and max.
+     */
+    public int argb(int value) {
+        return greys[value - min];
+    }
+}
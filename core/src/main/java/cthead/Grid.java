@@ -0,0 +1,12 @@
+package cthead;
+
+/**
+ * A 3D grid of cells, such as the voxels of a volume or its bricks.
+ * Axes are numbered 0 for x, 1 for y and 2 for z.
+ */
+public interface Grid {
+    /**
+     * @return the number of cells along the axis.
+     */
+    int size(int axis);
+}
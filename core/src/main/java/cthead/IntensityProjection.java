@@ -0,0 +1,9 @@
+package cthead;
+
+/**
+ * The reductions a ray can be projected with instead of opacity compositing.
+ */
+public enum IntensityProjection {
+    MAXIMUM,    // the densest voxel along the ray, so bone and contrast stand out
+    AVERAGE     // the mean along the ray, which looks like an X-ray
+}
@@ -0,0 +1,44 @@
+package cthead;
+
+/**
+ * This class holds a volume in a single flat array, the same order as the raw file. The voxels are stored
+ * with x changing fastest, then y, then z, so the voxel (x, y, z) lives at index (z * height + y) * width + x.
+ * Walking along x is cheap, but walking along z jumps a whole slice for every voxel.
+ */
+public class LinearVolume extends Volume {
+    private final short[] data;
+
+    /**
+     * Wraps an already filled array of voxels.
+     * @param data the voxels in x, y, z order.
+     * @param width number of voxels along the x axis.
+     * @param height number of voxels along the y axis.
+     * @param depth number of voxels along the z axis.
+     * @param min the smallest value in the data.
+     * @param max the largest value in the data.
+     */
+    public LinearVolume(short[] data, int width, int height, int depth, short min, short max) {
+        super(width, height, depth, min, max);
+        if (data.length != width * height * depth) {
+            throw new IllegalArgumentException("Expected " + width * height * depth + " voxels but got " + data.length);
+        }
+        this.data = data;
+    }
+
+    @Override
+    public short get(int x, int y, int z) {
+        return data[(z * height() + y) * width() + x];
+    }
+
+    @Override
+    public void copyRow(int y, int z, short[] row) {
+        System.arraycopy(data, (z * height() + y) * width(), row, 0, width());
+    }
+
+    /**
+     * @return the backing array, x changing fastest.
+     */
+    public short[] data() {
+        return data;
+    }
+}
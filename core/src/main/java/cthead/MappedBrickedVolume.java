@@ -0,0 +1,53 @@
+package cthead;
+
+import java.nio.ShortBuffer;
+
+/**
+ * This class is a volume whose voxels stay in a memory-mapped file, in the same bricked order as
+ * BrickedVolume. Like MappedVolume it is ready as soon as the file is mapped and leaves the voxels in
+ * the operating system's page cache, and like BrickedVolume rays along any axis touch few pages.
+ */
+public class MappedBrickedVolume extends Volume {
+    private final BrickLayout layout;
+    private final ShortBuffer voxels;
+
+    /**
+     * @param voxels the voxels in the order BrickedVolume.data() holds them, in a buffer over the mapped file.
+     * @param width number of voxels along the x axis.
+     * @param height number of voxels along the y axis.
+     * @param depth number of voxels along the z axis.
+     * @param min the smallest value in the data.
+     * @param max the largest value in the data.
+     * @param brickSize the edge length of a brick, a power of two.
+     */
+    public MappedBrickedVolume(ShortBuffer voxels, int width, int height, int depth, short min, short max,
+                               int brickSize) {
+        super(width, height, depth, min, max);
+        this.layout = new BrickLayout(width, height, depth, brickSize);
+        if (voxels.remaining() < layout.length()) {
+            throw new IllegalArgumentException("Expected " + layout.length() + " voxels but got "
+                    + voxels.remaining());
+        }
+        this.voxels = voxels.slice();
+    }
+
+    @Override
+    public short get(int x, int y, int z) {
+        return voxels.get(layout.index(x, y, z));
+    }
+
+    @Override
+    public void copyRow(int y, int z, short[] row) {
+        int brickSize = layout.brickSize();
+        for (int x = 0; x < width(); x += brickSize) {
+            voxels.get(layout.index(x, y, z), row, x, Math.min(brickSize, width() - x));
+        }
+    }
+
+    /**
+     * @return the edge length of a brick.
+     */
+    public int brickSize() {
+        return layout.brickSize();
+    }
+}
@@ -0,0 +1,39 @@
+package cthead;
+
+import java.nio.ShortBuffer;
+
+/**
+ * This class is a volume whose voxels stay in a memory-mapped file, in the same order as LinearVolume.
+ * Nothing is read until it is touched, so it is ready as soon as the file is mapped, and the operating
+ * system's page cache holds the voxels instead of the heap.
+ */
+public class MappedVolume extends Volume {
+    private final ShortBuffer voxels;
+
+    /**
+     * @param voxels the voxels in x, y, z order, in a buffer over the mapped file.
+     * @param width number of voxels along the x axis.
+     * @param height number of voxels along the y axis.
+     * @param depth number of voxels along the z axis.
+     * @param min the smallest value in the data.
+     * @param max the largest value in the data.
+     */
+    public MappedVolume(ShortBuffer voxels, int width, int height, int depth, short min, short max) {
+        super(width, height, depth, min, max);
+        if (voxels.remaining() < width * height * depth) {
+            throw new IllegalArgumentException("Expected " + width * height * depth + " voxels but got "
+                    + voxels.remaining());
+        }
+        this.voxels = voxels.slice();
+    }
+
+    @Override
+    public short get(int x, int y, int z) {
+        return voxels.get((z * height() + y) * width() + x);
+    }
+
+    @Override
+    public void copyRow(int y, int z, short[] row) {
+        voxels.get((z * height() + y) * width(), row, 0, width());
+    }
+}
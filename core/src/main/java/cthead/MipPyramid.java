@@ -0,0 +1,75 @@
+package cthead;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds a volume together with copies of it at lower resolutions. Level 0 is the volume itself
+ * and each further level halves every axis, a voxel being the average of the (up to) eight voxels below it.
+ * The low levels are cheap to render and are used to show something straight away while the user drags.
+ */
+public class MipPyramid {
+    private final List<Volume> levels;
+
+    /**
+     * Builds the lower levels straight away.
+     * @param volume the full resolution volume.
+     * @param extraLevels how many halved copies to make, each axis stops shrinking at one voxel.
+     */
+    public MipPyramid(Volume volume, int extraLevels) {
+        List<Volume> built = new ArrayList<>();
+        built.add(volume);
+        for (int level = 0; level < extraLevels; level++) {
+            built.add(halve(built.get(level)));
+        }
+        this.levels = Collections.unmodifiableList(built);
+    }
+
+    /**
+     * @return the volume at the level, 0 being full resolution.
+     */
+    public Volume level(int level) {
+        return levels.get(level);
+    }
+
+    /**
+     * @return the number of levels, including the full resolution one.
+     */
+    public int levelCount() {
+        return levels.size();
+    }
+
+    /**
+     * Averages each 2x2x2 block of voxels into one.
+     */
+    static Volume halve(Volume volume) {
+        int width = (volume.width() + 1) / 2;
+        int height = (volume.height() + 1) / 2;
+        int depth = (volume.depth() + 1) / 2;
+        short[] data = new short[width * height * depth];
+        short min = Short.MAX_VALUE;
+        short max = Short.MIN_VALUE;
+
+        int index = 0;
+        for (int z = 0; z < depth; z++) {
+            int z0 = 2 * z, z1 = Math.min(z0 + 1, volume.depth() - 1);
+            for (int y = 0; y < height; y++) {
+                int y0 = 2 * y, y1 = Math.min(y0 + 1, volume.height() - 1);
+                for (int x = 0; x < width; x++, index++) {
+                    int x0 = 2 * x, x1 = Math.min(x0 + 1, volume.width() - 1);
+                    // at an odd edge the last voxel is simply counted twice.
+                    int sum = volume.get(x0, y0, z0) + volume.get(x1, y0, z0)
+                            + volume.get(x0, y1, z0) + volume.get(x1, y1, z0)
+                            + volume.get(x0, y0, z1) + volume.get(x1, y0, z1)
+                            + volume.get(x0, y1, z1) + volume.get(x1, y1, z1);
+                    short average = (short) Math.round(sum / 8.0);
+                    data[index] = average;
+                    min = (short) Math.min(min, average);
+                    max = (short) Math.max(max, average);
+                }
+            }
+        }
+        return new LinearVolume(data, width, height, depth, min, max);
+    }
+}
@@ -0,0 +1,69 @@
+package cthead;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class renders a point sampled overview of a volume in place of the volume itself, scaled up to
+ * the full size image. It stands in for the full volume renders while a streaming volume is still being
+ * read, and is cheap enough to make again each time more of the overview is filled in.
+ */
+public class OverviewRenderer {
+    private final Volume overview;
+    private final int level;
+    private final VolumeRenderer volumeRenderer;
+    private final ProjectionRenderer projectionRenderer;
+    private final int[][] buffers = new int[View.values().length][];
+
+    /**
+     * @param overview the overview, every 2^level voxels of the full volume.
+     * @param level log2 of the distance between overview samples.
+     * @param engine runs the rows in parallel.
+     * @param greyTable the window the full volume is shown with, the projections use the same one.
+     */
+    public OverviewRenderer(LinearVolume overview, int level, RenderEngine engine, GreyTable greyTable) {
+        this.overview = overview;
+        this.level = level;
+        BrickMap bricks = new BrickMap(overview, BrickMap.DEFAULT_BRICK_SIZE);
+        this.volumeRenderer = new VolumeRenderer(overview, bricks, engine, TransferFunction.ctHead(0), 1 << level);
+        GreyTable overviewGreys = new GreyTable(overview.min(), overview.max());
+        overviewGreys.setWindow(greyTable.level(), greyTable.window());
+        this.projectionRenderer = new ProjectionRenderer(overview, bricks, engine, overviewGreys);
+    }
+
+    /**
+     * Counts the rays of the overview renders, null stops counting.
+     */
+    public void setStats(RenderStats stats) {
+        volumeRenderer.setStats(stats);
+    }
+
+    /**
+     * Renders a view of the overview. This is meant to be called from one render thread at a time.
+     * @param view which way to look through the volume.
+     * @param projection the intensity projection, or null to composite with the transfer function.
+     * @param pixels the ARGB output, width * height long.
+     * @param width the width of the full size image.
+     * @param height the height of the full size image.
+     * @param cancelled returns true once the image is no longer wanted.
+     * @return whether the image was finished.
+     */
+    public boolean render(View view, TransferFunction transferFunction, IntensityProjection projection,
+                          int[] pixels, int width, int height, BooleanSupplier cancelled) {
+        int smallWidth = view.width(overview);
+        int[] small = buffers[view.ordinal()];
+        if (small == null || small.length != smallWidth * view.height(overview)) {
+            small = buffers[view.ordinal()] = new int[smallWidth * view.height(overview)];
+        }
+        boolean finished;
+        if (projection == null) {
+            volumeRenderer.setTransferFunction(transferFunction);
+            finished = volumeRenderer.render(view, small, cancelled);
+        } else {
+            finished = projectionRenderer.render(view, projection, small, cancelled);
+        }
+        if (finished) {
+            ProgressiveRenderer.upscale(small, smallWidth, level, pixels, width, height);
+        }
+        return finished;
+    }
+}
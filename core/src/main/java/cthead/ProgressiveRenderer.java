@@ -0,0 +1,189 @@
+package cthead;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class volume renders from a mip pyramid. A preview renders a lower level and blows each pixel up
+ * to fill the full size image, a full render uses level 0. It remembers how long the last full render of
+ * each view took so the refinement policy can tell whether a preview is worth it.
+ */
+public class ProgressiveRenderer implements RaySettings {
+    private final MipPyramid pyramid;
+    private final VolumeRenderer[] renderers;
+    private final RefinementPolicy policy;
+    private final AtomicLongArray lastFullRenderNanos = new AtomicLongArray(View.values().length);
+    // one preview buffer per view, only touched from the render thread.
+    private final int[][] previewBuffers = new int[View.values().length][];
+
+    /**
+     * Sets up a volume renderer for every level of the pyramid.
+     * @param pyramid the volume and its lower resolution copies.
+     * @param engine runs the rows in parallel.
+     * @param transferFunction the colours and opacities to start with.
+     * @param policy when to preview and when to refine.
+     */
+    public ProgressiveRenderer(MipPyramid pyramid, RenderEngine engine, TransferFunction transferFunction,
+                               RefinementPolicy policy) {
+        this(pyramid, new BrickMap(pyramid.level(0), BrickMap.DEFAULT_BRICK_SIZE), engine, transferFunction, policy);
+    }
+
+    /**
+     * Sets up a volume renderer for every level of the pyramid, reusing a brick map of the full volume.
+     * @param pyramid the volume and its lower resolution copies.
+     * @param bricks the brick map of level 0, e.g. from a VolumeCache.
+     * @param engine runs the rows in parallel.
+     * @param transferFunction the colours and opacities to start with.
+     * @param policy when to preview and when to refine.
+     */
+    public ProgressiveRenderer(MipPyramid pyramid, BrickMap bricks, RenderEngine engine,
+                               TransferFunction transferFunction, RefinementPolicy policy) {
+        this.pyramid = pyramid;
+        this.policy = policy;
+        this.renderers = new VolumeRenderer[pyramid.levelCount()];
+        renderers[0] = new VolumeRenderer(pyramid.level(0), bricks, engine, transferFunction, 1);
+        for (int level = 1; level < renderers.length; level++) {
+            Volume volume = pyramid.level(level);
+            renderers[level] = new VolumeRenderer(volume, new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE), engine,
+                    transferFunction, 1 << level);
+        }
+    }
+
+    /**
+     * Changes the transfer function of every level.
+     */
+    public void setTransferFunction(TransferFunction transferFunction) {
+        for (VolumeRenderer renderer : renderers) {
+            renderer.setTransferFunction(transferFunction);
+        }
+    }
+
+    /**
+     * @param epsilon a ray stops once its transparency falls below this, on every level.
+     */
+    @Override
+    public void setTerminationEpsilon(double epsilon) {
+        for (VolumeRenderer renderer : renderers) {
+            renderer.setTerminationEpsilon(epsilon);
+        }
+    }
+
+    /**
+     * @param stepSize the distance between samples along a ray, in voxels of each level.
+     */
+    @Override
+    public void setStepSize(double stepSize) {
+        for (VolumeRenderer renderer : renderers) {
+            renderer.setStepSize(stepSize);
+        }
+    }
+
+    /**
+     * @param bytes how much memory the segment summaries of each level may hold, 0 turns them off.
+     */
+    @Override
+    public void setSegmentCacheBudget(long bytes) {
+        for (VolumeRenderer renderer : renderers) {
+            renderer.setSegmentCacheBudget(bytes);
+        }
+    }
+
+    /**
+     * Counts the rays of every level, null stops counting.
+     */
+    public void setStats(RenderStats stats) {
+        for (VolumeRenderer renderer : renderers) {
+            renderer.setStats(stats);
+        }
+    }
+
+    /**
+     * Picks the compositing kernel of every level.
+     */
+    @Override
+    public void setKernel(CompositingKernel kernel) {
+        for (VolumeRenderer renderer : renderers) {
+            renderer.setKernel(kernel);
+        }
+    }
+
+    /**
+     * Turns Phong shading on or off for every level, all sharing the full resolution normals.
+     * @param gradients the normals of the full resolution volume, null turns shading off.
+     */
+    public void setShading(GradientVolume gradients, Shading shading) {
+        for (VolumeRenderer renderer : renderers) {
+            renderer.setShading(gradients, shading);
+        }
+    }
+
+    /**
+     * @return the refinement policy in use.
+     */
+    public RefinementPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * @return whether the next render of the view should start with a preview.
+     */
+    public boolean wantsPreview(View view) {
+        return pyramid.levelCount() > 1 && policy.wantsPreview(lastFullRenderNanos.get(view.ordinal()));
+    }
+
+    /**
+     * Renders a view at full resolution, timing it for the refinement policy.
+     * @param view which way to look through the volume.
+     * @param pixels the ARGB output at full size.
+     * @param cancelled returns true once the image is no longer wanted.
+     * @return whether the image was finished.
+     */
+    public boolean renderFull(View view, int[] pixels, BooleanSupplier cancelled) {
+        long start = System.nanoTime();
+        boolean finished = renderers[0].render(view, pixels, cancelled);
+        if (finished) {
+            lastFullRenderNanos.set(view.ordinal(), System.nanoTime() - start);
+        }
+        return finished;
+    }
+
+    /**
+     * Renders a view from the preview level of the pyramid and scales it up to full size.
+     * This is meant to be called from one render thread at a time.
+     * @param view which way to look through the volume.
+     * @param pixels the ARGB output at full size.
+     * @param cancelled returns true once the image is no longer wanted.
+     * @return whether the image was finished.
+     */
+    public boolean renderPreview(View view, int[] pixels, BooleanSupplier cancelled) {
+        int level = Math.min(policy.previewLevel(), pyramid.levelCount() - 1);
+        Volume small = pyramid.level(level);
+        int smallWidth = view.width(small);
+        int[] preview = previewBuffers[view.ordinal()];
+        if (preview == null || preview.length != smallWidth * view.height(small)) {
+            preview = previewBuffers[view.ordinal()] = new int[smallWidth * view.height(small)];
+        }
+        if (!renderers[level].render(view, preview, cancelled)) {
+            return false;
+        }
+
+        Volume full = pyramid.level(0);
+        upscale(preview, smallWidth, level, pixels, view.width(full), view.height(full));
+        return true;
+    }
+
+    /**
+     * Blows a low resolution image up to full size, every small pixel covering a square of 2^level pixels.
+     * @param small the low resolution image.
+     * @param smallWidth its width, at least width >> level.
+     * @param pixels the full size output.
+     */
+    public static void upscale(int[] small, int smallWidth, int level, int[] pixels, int width, int height) {
+        for (int j = 0; j < height; j++) {
+            int row = (j >> level) * smallWidth;
+            for (int i = 0; i < width; i++) {
+                pixels[j * width + i] = small[row + (i >> level)];
+            }
+        }
+    }
+}
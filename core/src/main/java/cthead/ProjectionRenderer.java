@@ -0,0 +1,145 @@
+package cthead;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class renders maximum and average intensity projections along the axis aligned views. They are
+ * plain reductions along each ray, with no transfer function or compositing, so they run on the same
+ * parallel row bands as the other renderers at a fraction of the cost.
+ * <p>
+ * The maximum projection checks the brick map each time a ray enters a brick and steps straight over
+ * bricks whose max cannot beat the ray's maximum so far. The average projection is stretched so the
+ * lowest average in the image is black and the highest white.
+ */
+public class ProjectionRenderer {
+    private final Volume volume;
+    private final BrickMap bricks;
+    private final RenderEngine engine;
+    private final GreyTable greyTable;
+
+    /**
+     * @param volume the volume to project.
+     * @param bricks the brick min/max of the same volume, used to skip bricks in the maximum projection.
+     * @param engine runs the rows in parallel.
+     * @param greyTable the window/level the maximum projection is shown with, normally the slices' one.
+     */
+    public ProjectionRenderer(Volume volume, BrickMap bricks, RenderEngine engine, GreyTable greyTable) {
+        this.volume = volume;
+        this.bricks = bricks;
+        this.engine = engine;
+        this.greyTable = greyTable;
+    }
+
+    /**
+     * Renders a whole projection of a view.
+     * @param view which way to look through the volume.
+     * @param projection how each ray is reduced to one value.
+     * @param pixels the ARGB output, view.width * view.height long.
+     */
+    public void render(View view, IntensityProjection projection, int[] pixels) {
+        render(view, projection, pixels, () -> false);
+    }
+
+    /**
+     * Renders a whole projection of a view, giving up part way if it is cancelled.
+     * @param view which way to look through the volume.
+     * @param projection how each ray is reduced to one value.
+     * @param pixels the ARGB output, view.width * view.height long.
+     * @param cancelled returns true once the image is no longer wanted.
+     * @return whether the image was finished.
+     */
+    public boolean render(View view, IntensityProjection projection, int[] pixels, BooleanSupplier cancelled) {
+        int width = view.width(volume), height = view.height(volume);
+        if (projection == IntensityProjection.MAXIMUM) {
+            return engine.render(pixels, width, height,
+                    (out, w, fromRow, toRow) -> maximumRows(view, out, w, fromRow, toRow), cancelled);
+        }
+        if (!engine.render(pixels, width, height,
+                (out, w, fromRow, toRow) -> averageRows(view, out, w, fromRow, toRow), cancelled)) {
+            return false;
+        }
+        stretch(pixels, width * height);
+        return true;
+    }
+
+    private void maximumRows(View view, int[] pixels, int width, int fromRow, int toRow) {
+        Volume volume = this.volume;
+        int depth = view.depth(volume);
+        int top = volume.max();
+        int brickShift = bricks.brickShift();
+        int brickMask = bricks.brickSize() - 1;
+        int bricksX = bricks.size(0), bricksY = bricks.size(1);
+        // one step along the ray moves one voxel along the view's w axis.
+        int stepX = view.wAxis == 0 ? 1 : 0, stepY = view.wAxis == 1 ? 1 : 0, stepZ = view.wAxis == 2 ? 1 : 0;
+
+        for (int j = fromRow; j < toRow; j++) {
+            for (int i = 0; i < width; i++) {
+                int x = view.coordinate(0, i, j, 0), y = view.coordinate(1, i, j, 0), z = view.coordinate(2, i, j, 0);
+                int best = Integer.MIN_VALUE;
+                for (int k = 0; k < depth; ) {
+                    if ((k & brickMask) == 0) {
+                        int brick = ((z >> brickShift) * bricksY + (y >> brickShift)) * bricksX + (x >> brickShift);
+                        if (bricks.max(brick) <= best) {
+                            // nothing in this brick can beat the ray so far, go to the start of the next.
+                            int next = k + brickMask + 1;
+                            x += (next - k) * stepX;
+                            y += (next - k) * stepY;
+                            z += (next - k) * stepZ;
+                            k = next;
+                            continue;
+                        }
+                    }
+                    int value = volume.get(x, y, z);
+                    if (value > best) {
+                        best = value;
+                        if (best == top) {
+                            break;
+                        }
+                    }
+                    k++;
+                    x += stepX;
+                    y += stepY;
+                    z += stepZ;
+                }
+                pixels[j * width + i] = greyTable.argb(best);
+            }
+        }
+    }
+
+    /**
+     * Writes the average of each ray, less the volume's min and in 1/16ths, for stretch() to turn into grey.
+     */
+    private void averageRows(View view, int[] pixels, int width, int fromRow, int toRow) {
+        Volume volume = this.volume;
+        int depth = view.depth(volume);
+        int min = volume.min();
+        int stepX = view.wAxis == 0 ? 1 : 0, stepY = view.wAxis == 1 ? 1 : 0, stepZ = view.wAxis == 2 ? 1 : 0;
+
+        for (int j = fromRow; j < toRow; j++) {
+            for (int i = 0; i < width; i++) {
+                int x = view.coordinate(0, i, j, 0), y = view.coordinate(1, i, j, 0), z = view.coordinate(2, i, j, 0);
+                long sum = 0;
+                for (int k = 0; k < depth; k++, x += stepX, y += stepY, z += stepZ) {
+                    sum += volume.get(x, y, z) - min;
+                }
+                pixels[j * width + i] = (int) (sum * 16 / depth);
+            }
+        }
+    }
+
+    /**
+     * Maps the averages from the lowest to the highest onto black to white.
+     */
+    private static void stretch(int[] pixels, int count) {
+        int low = Integer.MAX_VALUE, high = Integer.MIN_VALUE;
+        for (int p = 0; p < count; p++) {
+            low = Math.min(low, pixels[p]);
+            high = Math.max(high, pixels[p]);
+        }
+        double scale = high > low ? 255.0 / (high - low) : 0;
+        for (int p = 0; p < count; p++) {
+            int grey = (int) ((pixels[p] - low) * scale + 0.5);
+            pixels[p] = 0xff000000 | (grey << 16) | (grey << 8) | grey;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package cthead;
+
+/**
+ * The settings of a renderer that casts rays through a volume, shared by a single volume renderer and
+ * a progressive renderer so both can be configured the same way.
+ */
+public interface RaySettings {
+    /**
+     * @param epsilon a ray stops once its transparency falls below this, 0 walks every ray to the end.
+     */
+    void setTerminationEpsilon(double epsilon);
+
+    /**
+     * @param stepSize the distance between samples along a ray, in voxels.
+     */
+    void setStepSize(double stepSize);
+
+    /**
+     * @param bytes how much memory the per-ray segment summaries may hold, 0 turns them off.
+     */
+    void setSegmentCacheBudget(long bytes);
+
+    /**
+     * Picks the compositing kernel of unshaded renders.
+     */
+    void setKernel(CompositingKernel kernel);
+}
@@ -0,0 +1,57 @@
+package cthead;
+
+/**
+ * This class decides how progressive volume renders behave. While the user is dragging, a view whose
+ * last full render took longer than the frame budget is first shown from a lower mip level, and the full
+ * resolution render follows once no new request has come in for the idle delay.
+ */
+public class RefinementPolicy {
+    public static final int DEFAULT_PREVIEW_LEVEL = 1;
+    public static final long DEFAULT_FRAME_BUDGET_MILLIS = 40;
+    public static final long DEFAULT_IDLE_DELAY_MILLIS = 150;
+
+    private final int previewLevel;
+    private final long frameBudgetMillis;
+    private final long idleDelayMillis;
+
+    /**
+     * Uses half resolution previews, a 40ms budget and a 150ms idle delay.
+     */
+    public RefinementPolicy() {
+        this(DEFAULT_PREVIEW_LEVEL, DEFAULT_FRAME_BUDGET_MILLIS, DEFAULT_IDLE_DELAY_MILLIS);
+    }
+
+    /**
+     * @param previewLevel the mip level to preview from, 1 for half and 2 for quarter resolution.
+     * @param frameBudgetMillis full renders faster than this are done straight away with no preview.
+     * @param idleDelayMillis how long input has to settle before the full render starts.
+     */
+    public RefinementPolicy(int previewLevel, long frameBudgetMillis, long idleDelayMillis) {
+        if (previewLevel < 1) {
+            throw new IllegalArgumentException("The preview level must be 1 or more");
+        }
+        this.previewLevel = previewLevel;
+        this.frameBudgetMillis = frameBudgetMillis;
+        this.idleDelayMillis = idleDelayMillis;
+    }
+
+    public int previewLevel() {
+        return previewLevel;
+    }
+
+    public long frameBudgetMillis() {
+        return frameBudgetMillis;
+    }
+
+    public long idleDelayMillis() {
+        return idleDelayMillis;
+    }
+
+    /**
+     * @param lastFullRenderNanos how long the last full resolution render of the view took, 0 if unknown.
+     * @return whether a preview should be shown before the full render.
+     */
+    public boolean wantsPreview(long lastFullRenderNanos) {
+        return lastFullRenderNanos > frameBudgetMillis * 1_000_000;
+    }
+}
@@ -0,0 +1,150 @@
+package cthead;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class renders images in parallel. The image is split into bands of rows which are handed out
+ * to a ForkJoinPool, every band writing its own part of a shared ARGB pixel array.
+ */
+public class RenderEngine {
+    // bands smaller than this are not split any further.
+    private static final int MIN_BAND_ROWS = 4;
+    private static final BooleanSupplier NEVER_CANCELLED = () -> false;
+
+    private final ForkJoinPool pool;
+    private volatile RenderStats stats;
+
+    /**
+     * Fills some rows of an ARGB image, one int per pixel in row order.
+     */
+    @FunctionalInterface
+    public interface RowRenderer {
+        void renderRows(int[] pixels, int width, int fromRow, int toRow);
+    }
+
+    /**
+     * Handles the indices from (inclusive) to to (exclusive).
+     */
+    @FunctionalInterface
+    public interface RangeTask {
+        void run(int from, int to);
+    }
+
+    /**
+     * Creates an engine using one thread per available core.
+     */
+    public RenderEngine() {
+        this(new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param pool the pool the row bands are run on.
+     */
+    public RenderEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Renders a whole image and returns once every row has been written.
+     * @param pixels the ARGB output, at least width * height long.
+     * @param width width of the image.
+     * @param height height of the image.
+     * @param renderer the code that fills a band of rows.
+     */
+    public void render(int[] pixels, int width, int height, RowRenderer renderer) {
+        render(pixels, width, height, renderer, NEVER_CANCELLED);
+    }
+
+    /**
+     * Renders a whole image unless it is cancelled part way. Bands that have not started when
+     * the image is cancelled are skipped, so the pixels are only complete if this returns true.
+     * @param pixels the ARGB output, at least width * height long.
+     * @param width width of the image.
+     * @param height height of the image.
+     * @param renderer the code that fills a band of rows.
+     * @param cancelled checked before each band, returns true once the image is no longer wanted.
+     * @return whether every row was written.
+     */
+    public boolean render(int[] pixels, int width, int height, RowRenderer renderer, BooleanSupplier cancelled) {
+        // aim for a few bands per thread so uneven rows (e.g. air vs. bone) still balance out.
+        int bandRows = Math.max(MIN_BAND_ROWS, height / (pool.getParallelism() * 4));
+        pool.invoke(new Band(pixels, width, 0, height, bandRows, renderer, cancelled, stats));
+        return !cancelled.getAsBoolean();
+    }
+
+    /**
+     * Runs a task over the indices 0 to count, split into bands on the render threads the same way as
+     * the rows of an image. Used for one off work on the volume such as precomputing gradients.
+     * @param count the number of indices, e.g. slices of the volume.
+     * @param task the code that handles a band of indices.
+     */
+    public void run(int count, RangeTask task) {
+        render(null, 0, count, (pixels, width, from, to) -> task.run(from, to));
+    }
+
+    /**
+     * Counts the memory every band allocates from now on, null stops counting.
+     */
+    public void setStats(RenderStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * @return the number of threads used for rendering.
+     */
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static final class Band extends RecursiveAction {
+        private final int[] pixels;
+        private final int width;
+        private final int fromRow;
+        private final int toRow;
+        private final int bandRows;
+        private final RowRenderer renderer;
+        private final BooleanSupplier cancelled;
+        private final RenderStats stats;
+
+        Band(int[] pixels, int width, int fromRow, int toRow, int bandRows, RowRenderer renderer,
+             BooleanSupplier cancelled, RenderStats stats) {
+            this.pixels = pixels;
+            this.width = width;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.bandRows = bandRows;
+            this.renderer = renderer;
+            this.cancelled = cancelled;
+            this.stats = stats;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            if (toRow - fromRow <= bandRows) {
+                if (stats == null) {
+                    renderer.renderRows(pixels, width, fromRow, toRow);
+                } else {
+                    long allocated = RenderStats.allocatedBytes();
+                    renderer.renderRows(pixels, width, fromRow, toRow);
+                    stats.addBandAllocation(RenderStats.allocatedBytes() - allocated);
+                }
+                return;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new Band(pixels, width, fromRow, middle, bandRows, renderer, cancelled, stats),
+                    new Band(pixels, width, middle, toRow, bandRows, renderer, cancelled, stats));
+        }
+    }
+}
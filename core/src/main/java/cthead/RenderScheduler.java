@@ -0,0 +1,180 @@
+package cthead;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * This class runs renders away from the UI thread. Only the latest request for each view is kept: a
+ * request that arrives while an older one is waiting replaces it, and one that arrives while an older
+ * one is running cancels it. Finished frames are handed to the callback executor (Platform::runLater
+ * for JavaFX), so a fast slider drag costs at most one render per view rather than one per event.
+ * <p>
+ * All jobs run one after another on a single render thread, each job being parallel inside through
+ * the RenderEngine. Anything the renderers share, like the transfer function, should therefore only
+ * be changed from inside a job.
+ */
+public class RenderScheduler {
+    private final Executor callbackExecutor;
+    private final ScheduledExecutorService renderThread;
+    private final Map<View, Slot> slots = new EnumMap<>(View.class);
+
+    /**
+     * Renders one frame into a buffer.
+     */
+    @FunctionalInterface
+    public interface Job {
+        /**
+         * @param pixels the ARGB output.
+         * @param cancelled returns true once the frame is no longer wanted.
+         * @return whether the frame was finished.
+         */
+        boolean render(int[] pixels, BooleanSupplier cancelled);
+    }
+
+    /**
+     * @param callbackExecutor where finished frames are published, e.g. Platform::runLater.
+     */
+    public RenderScheduler(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        this.renderThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "render-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (View view : View.values()) {
+            slots.put(view, new Slot());
+        }
+    }
+
+    /**
+     * Asks for a new frame of a view, replacing or cancelling any older request for the same view.
+     * @param view the view the frame is for.
+     * @param pixelCount the size of the buffer the job needs.
+     * @param job renders the frame, run on the render thread.
+     * @param publish shows the finished frame, run on the callback executor. The buffer is
+     *                reused once this returns so it must not be kept.
+     */
+    public void submit(View view, int pixelCount, Job job, Consumer<int[]> publish) {
+        Slot slot = slots.get(view);
+        cancelDelayed(slot);
+        enqueue(slot, new Request(pixelCount, job, publish));
+    }
+
+    /**
+     * Asks for a frame of a view once a delay has passed. Any request for the view made before the
+     * delay is up, immediate or delayed, drops this one. This is how a full resolution render is
+     * put off until the user stops dragging.
+     * @param view the view the frame is for.
+     * @param delayMillis how long to wait before the request is made.
+     * @param pixelCount the size of the buffer the job needs.
+     * @param job renders the frame, run on the render thread.
+     * @param publish shows the finished frame, run on the callback executor.
+     */
+    public void submitAfter(View view, long delayMillis, int pixelCount, Job job, Consumer<int[]> publish) {
+        Slot slot = slots.get(view);
+        Request request = new Request(pixelCount, job, publish);
+        synchronized (slot) {
+            cancelDelayed(slot);
+            slot.delayed = renderThread.schedule(() -> enqueue(slot, request), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void cancelDelayed(Slot slot) {
+        synchronized (slot) {
+            if (slot.delayed != null) {
+                slot.delayed.cancel(false);
+                slot.delayed = null;
+            }
+        }
+    }
+
+    private void enqueue(Slot slot, Request request) {
+        Request older = slot.pending.getAndSet(request);
+        Request running = slot.running;
+        if (running != null) {
+            running.cancelled = true;
+        }
+        if (older == null) {
+            renderThread.execute(() -> run(slot));
+        }
+    }
+
+    /**
+     * Stops the render thread, dropping any frames that have not started.
+     */
+    public void shutdown() {
+        renderThread.shutdownNow();
+    }
+
+    private void run(Slot slot) {
+        Request request = slot.pending.getAndSet(null);
+        if (request == null) {
+            return;
+        }
+        slot.running = request;
+        // a request that came in before running was set could not cancel this one, so look again. It
+        // has a run of its own queued, as pending was empty when it arrived.
+        if (slot.pending.get() != null) {
+            slot.running = null;
+            return;
+        }
+        int[] pixels = slot.spareBuffer(request.pixelCount);
+        boolean finished;
+        try {
+            finished = request.job.render(pixels, () -> request.cancelled);
+        } finally {
+            slot.running = null;
+        }
+        if (!finished || request.cancelled) {
+            slot.spare.offer(pixels);
+            return;
+        }
+        callbackExecutor.execute(() -> {
+            request.publish.accept(pixels);
+            slot.spare.offer(pixels);
+        });
+    }
+
+    private static final class Request {
+        final int pixelCount;
+        final Job job;
+        final Consumer<int[]> publish;
+        volatile boolean cancelled;
+
+        Request(int pixelCount, Job job, Consumer<int[]> publish) {
+            this.pixelCount = pixelCount;
+            this.job = job;
+            this.publish = publish;
+        }
+    }
+
+    /**
+     * The requests and buffers of one view.
+     */
+    private static final class Slot {
+        final AtomicReference<Request> pending = new AtomicReference<>();
+        volatile Request running;
+        // a request waiting for its delay to pass, guarded by the slot's lock.
+        Future<?> delayed;
+        // buffers not being rendered into or published, so a frame can render while the last one is shown.
+        final Queue<int[]> spare = new ConcurrentLinkedQueue<>();
+
+        int[] spareBuffer(int pixelCount) {
+            int[] pixels = spare.poll();
+            while (pixels != null && pixels.length != pixelCount) {
+                pixels = spare.poll();
+            }
+            return pixels != null ? pixels : new int[pixelCount];
+        }
+    }
+}
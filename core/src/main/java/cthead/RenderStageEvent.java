@@ -0,0 +1,30 @@
+package cthead;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event for each stage RenderStats times, only recorded while a flight recording is running,
+ * e.g. java -XX:StartFlightRecording=filename=cthead.jfr.
+ */
+@Name("cthead.RenderStage")
+@Label("Render Stage")
+@Category("CThead")
+@Description("One load, slice, composite, projection, upload or whole frame")
+class RenderStageEvent extends jdk.jfr.Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long nanos;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the thread that ran the stage")
+    @DataAmount(DataAmount.BYTES)
+    long allocated;
+}
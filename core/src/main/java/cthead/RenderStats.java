@@ -0,0 +1,216 @@
+package cthead;
+
+import com.sun.management.ThreadMXBean;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class collects where the time goes: a latency histogram for each stage of getting a frame on
+ * screen, how many rays and samples the volume renderer works through and how many rays stop early,
+ * and how much memory each stage allocates. Everything is counted with atomics so any thread can
+ * record, and each stage is also sent as a JFR event while a flight recording is running.
+ * <p>
+ * Allocations are read from the JVM's per thread counters, so a stage's count is what the thread that
+ * ran it allocated. The render bands are counted separately by the RenderEngine.
+ */
+public class RenderStats {
+    /**
+     * The stages that are timed.
+     */
+    public enum Stage {
+        LOAD,           // reading the volume from its file
+        SLICE,          // extracting a slice
+        COMPOSITE,      // volume rendering, previews included
+        PROJECTION,     // maximum or average intensity projections
+        UPLOAD,         // copying a finished frame into the image
+        FRAME           // from asking for a frame to it being shown
+    }
+
+    private static final ThreadMXBean THREADS = threadBean();
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final AtomicLongArray allocated = new AtomicLongArray(Stage.values().length);
+    private final LongAdder bandAllocated = new LongAdder();
+    private final LongAdder rays = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder terminated = new LongAdder();
+
+    public RenderStats() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    private static ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof ThreadMXBean) {
+            ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the bytes the current thread has allocated so far, 0 if the JVM does not count them.
+     */
+    public static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Counts one run of a stage.
+     * @param nanos how long it took.
+     * @param allocatedBytes how much it allocated.
+     */
+    public void record(Stage stage, long nanos, long allocatedBytes) {
+        histograms.get(stage).record(nanos);
+        allocated.addAndGet(stage.ordinal(), allocatedBytes);
+        RenderStageEvent event = new RenderStageEvent();
+        if (event.isEnabled()) {
+            event.stage = stage.name();
+            event.nanos = nanos;
+            event.allocated = allocatedBytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Runs some work and counts it as a run of a stage if it finished.
+     * @param work returns false if it was cancelled.
+     * @return what the work returned.
+     */
+    public boolean time(Stage stage, BooleanSupplier work) {
+        long start = System.nanoTime();
+        long startAllocated = allocatedBytes();
+        boolean finished = work.getAsBoolean();
+        if (finished) {
+            record(stage, System.nanoTime() - start, allocatedBytes() - startAllocated);
+        }
+        return finished;
+    }
+
+    /**
+     * Counts the rays of a band of a volume render.
+     * @param rayCount the rays cast.
+     * @param sampleCount the samples composited, empty space skipped over not included.
+     * @param terminatedCount the rays that stopped because too little light was left.
+     */
+    public void addRays(long rayCount, long sampleCount, long terminatedCount) {
+        rays.add(rayCount);
+        samples.add(sampleCount);
+        terminated.add(terminatedCount);
+    }
+
+    /**
+     * Counts memory allocated by a render band on an engine thread.
+     */
+    public void addBandAllocation(long bytes) {
+        bandAllocated.add(bytes);
+    }
+
+    public LatencyHistogram histogram(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * @return the bytes the runs of a stage allocated on their own thread.
+     */
+    public long allocated(Stage stage) {
+        return allocated.get(stage.ordinal());
+    }
+
+    public long bandAllocated() {
+        return bandAllocated.sum();
+    }
+
+    public long rays() {
+        return rays.sum();
+    }
+
+    public long samples() {
+        return samples.sum();
+    }
+
+    /**
+     * @return samples composited per second of compositing.
+     */
+    public double samplesPerSecond() {
+        long nanos = histograms.get(Stage.COMPOSITE).totalNanos();
+        return nanos == 0 ? 0 : samples.sum() * 1e9 / nanos;
+    }
+
+    /**
+     * @return the fraction of rays that stopped before the end of the volume.
+     */
+    public double terminationRate() {
+        long rayCount = rays.sum();
+        return rayCount == 0 ? 0 : terminated.sum() / (double) rayCount;
+    }
+
+    /**
+     * @return a few lines for an on screen overlay: the median and 99th percentile of each stage that
+     * has run, then the ray counts and allocations.
+     */
+    public String summary() {
+        StringBuilder text = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            if (histogram.count() > 0) {
+                text.append(String.format(Locale.ROOT, "%-10s %6d  p50 %7.2f  p99 %7.2f  max %7.2f ms%n",
+                        stage.name().toLowerCase(Locale.ROOT), histogram.count(),
+                        histogram.percentileNanos(50) / 1e6, histogram.percentileNanos(99) / 1e6,
+                        histogram.maxNanos() / 1e6));
+            }
+        }
+        long stageAllocated = 0;
+        for (Stage stage : Stage.values()) {
+            stageAllocated += allocated(stage);
+        }
+        text.append(String.format(Locale.ROOT, "%.1f M samples/s, %.0f%% of rays stopped early%n",
+                samplesPerSecond() / 1e6, terminationRate() * 100));
+        text.append(String.format(Locale.ROOT, "allocated %.1f MB in stages, %.1f MB in render bands",
+                stageAllocated / (double) (1 << 20), bandAllocated() / (double) (1 << 20)));
+        return text.toString();
+    }
+
+    /**
+     * @return everything collected as a JSON object, durations in nanoseconds and memory in bytes.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"stages\": {");
+        String separator = "\n";
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            json.append(separator).append(String.format(Locale.ROOT,
+                    "    \"%s\": {\"count\": %d, \"meanNanos\": %.0f, \"p50Nanos\": %d, \"p90Nanos\": %d,"
+                            + " \"p99Nanos\": %d, \"maxNanos\": %d, \"allocatedBytes\": %d}",
+                    stage.name().toLowerCase(Locale.ROOT), histogram.count(), histogram.meanNanos(),
+                    histogram.percentileNanos(50), histogram.percentileNanos(90), histogram.percentileNanos(99),
+                    histogram.maxNanos(), allocated(stage)));
+            separator = ",\n";
+        }
+        json.append(String.format(Locale.ROOT, "%n  },%n  \"rays\": %d,%n  \"samples\": %d,%n"
+                        + "  \"terminatedRays\": %d,%n  \"samplesPerSecond\": %.0f,%n  \"terminationRate\": %.4f,%n"
+                        + "  \"bandAllocatedBytes\": %d%n}%n",
+                rays(), samples(), terminated.sum(), samplesPerSecond(), terminationRate(), bandAllocated()));
+        return json.toString();
+    }
+
+    /**
+     * Writes toJson() to a file, replacing it.
+     */
+    public void writeJson(Path path) throws IOException {
+        Files.write(path, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,87 @@
+package cthead;
+
+/**
+ * A run length summary of what every ray of one camera passes through, for the CThead transfer
+ * functions where each sample is either skin, bone or transparent whatever the skin opacity. Each ray
+ * is stored as runs of consecutive skin or bone samples, with the transparent samples in between left
+ * out. Compositing a run of n equal samples is a geometric series, so a new skin opacity is rendered
+ * by walking a handful of runs per pixel instead of marching through the volume again. The run a ray
+ * stops in is walked sample by sample, so it stops at the same sample as a march would.
+ * <p>
+ * A run is one char, the top bit set for bone and the rest the number of samples. Rows are filled and
+ * read by the render threads independently.
+ */
+final class SegmentCache {
+    static final char BONE = 0x8000;
+    static final int MAX_RUN = 0x7fff;
+
+    private final Camera camera;
+    private final char[][] runs;
+    // runs of pixel i of row j are runs[j][starts[j][i]] up to runs[j][starts[j][i + 1]].
+    private final int[][] starts;
+
+    SegmentCache(Camera camera) {
+        this.camera = camera;
+        this.runs = new char[camera.height()][];
+        this.starts = new int[camera.height()][];
+    }
+
+    Camera camera() {
+        return camera;
+    }
+
+    void setRow(int row, char[] rowRuns, int[] rowStarts) {
+        runs[row] = rowRuns;
+        starts[row] = rowStarts;
+    }
+
+    /**
+     * @return the memory held by the runs and their indexes.
+     */
+    long bytes() {
+        long bytes = 0;
+        for (int j = 0; j < runs.length; j++) {
+            bytes += (long) runs[j].length * Character.BYTES + (long) starts[j].length * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Composites the rows fromRow (inclusive) to toRow (exclusive) from their runs.
+     * @param skin the premultiplied colour and transparency of one skin sample, as in a TransferTable.
+     * @param bone the same for one bone sample.
+     * @param epsilon a ray stops once its transparency falls below this.
+     */
+    void composite(float[] skin, float[] bone, double epsilon, int[] pixels, int width, int fromRow, int toRow) {
+        for (int j = fromRow; j < toRow; j++) {
+            char[] rowRuns = runs[j];
+            int[] rowStarts = starts[j];
+            for (int i = 0; i < width; i++) {
+                double red = 0, green = 0, blue = 0, transparency = 1;
+                for (int r = rowStarts[i]; r < rowStarts[i + 1] && transparency >= epsilon; r++) {
+                    float[] sample = (rowRuns[r] & BONE) != 0 ? bone : skin;
+                    double through = Math.pow(sample[3], rowRuns[r] & MAX_RUN);
+                    if (transparency * through < epsilon) {
+                        // the ray stops inside this run, so it is walked sample by sample like the volume.
+                        for (int n = rowRuns[r] & MAX_RUN; n > 0 && transparency >= epsilon; n--) {
+                            red += transparency * sample[0];
+                            green += transparency * sample[1];
+                            blue += transparency * sample[2];
+                            transparency *= sample[3];
+                        }
+                        break;
+                    }
+                    if (sample[3] < 1) {
+                        // n samples give c * t * (1 + T + ... + T^(n-1)).
+                        double weight = transparency * (1 - through) / (1 - sample[3]);
+                        red += weight * sample[0];
+                        green += weight * sample[1];
+                        blue += weight * sample[2];
+                    }
+                    transparency *= through;
+                }
+                pixels[j * width + i] = VolumeRenderer.argb(red, green, blue);
+            }
+        }
+    }
+}
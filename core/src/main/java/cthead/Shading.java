@@ -0,0 +1,54 @@
+package cthead;
+
+/**
+ * Phong lighting for the volume renderer, with the light at the eye (a headlight) so the half vector is
+ * the light direction. Lighting is two sided since a gradient points into the denser material, which can
+ * be either side of a surface. Because the normals are quantized, the lighting of every normal code is
+ * worked out once per light direction and a sample's shading is a single table lookup.
+ */
+public class Shading {
+    public static final Shading DEFAULT = new Shading(0.3, 0.7, 0.3, 20);
+
+    private final double ambient;
+    private final double diffuse;
+    private final double specular;
+    private final double shininess;
+
+    /**
+     * @param ambient light reaching every sample.
+     * @param diffuse weight of the light falling on a surface facing the light.
+     * @param specular weight of the white highlight.
+     * @param shininess the Phong exponent, higher gives smaller highlights.
+     */
+    public Shading(double ambient, double diffuse, double specular, double shininess) {
+        this.ambient = ambient;
+        this.diffuse = diffuse;
+        this.specular = specular;
+        this.shininess = shininess;
+    }
+
+    /**
+     * Works out the lighting of every normal code for a light shining along a direction. Entry
+     * 2 * code scales the sample's colour and entry 2 * code + 1 is the highlight, to be scaled by
+     * the sample's opacity. FLAT normals get a scale of 1 and no highlight, as if unshaded.
+     * @param lx the direction the light travels, which need not be unit length.
+     */
+    public float[] table(double lx, double ly, double lz) {
+        double length = Math.sqrt(lx * lx + ly * ly + lz * lz);
+        lx /= length;
+        ly /= length;
+        lz /= length;
+        float[] table = new float[GradientVolume.CODES * 2];
+        double[] normal = new double[3];
+        for (int code = 0; code < GradientVolume.CODES; code++) {
+            if (GradientVolume.decode(code, normal)) {
+                double cosine = Math.abs(normal[0] * lx + normal[1] * ly + normal[2] * lz);
+                table[2 * code] = (float) (ambient + diffuse * cosine);
+                table[2 * code + 1] = (float) (specular * Math.pow(cosine, shininess));
+            } else {
+                table[2 * code] = 1;
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,75 @@
+package cthead;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class copies a slice of the volume into a grey ARGB image, each voxel mapped to grey through
+ * a window/level table.
+ */
+public class SliceRenderer {
+    private final Volume volume;
+    private final RenderEngine engine;
+    private final GreyTable greyTable;
+
+    /**
+     * Creates a slice renderer whose window covers the whole range of the volume.
+     * @param volume the volume to take slices from.
+     * @param engine runs the rows in parallel.
+     */
+    public SliceRenderer(Volume volume, RenderEngine engine) {
+        this.volume = volume;
+        this.engine = engine;
+        this.greyTable = new GreyTable(volume.min(), volume.max());
+    }
+
+    /**
+     * Changes the window/level. Values below level - window / 2 are black, values above
+     * level + window / 2 are white and values in between are a linear ramp of grey.
+     * This must not be called while a slice is being rendered.
+     * @param level the value in the middle of the grey ramp.
+     * @param window the width of the grey ramp.
+     */
+    public void setWindow(double level, double window) {
+        greyTable.setWindow(level, window);
+    }
+
+    /**
+     * @return the window/level table, to show other images of the volume the same way.
+     */
+    public GreyTable greyTable() {
+        return greyTable;
+    }
+
+    /**
+     * Renders one slice of a view.
+     * @param view which way to cut through the volume.
+     * @param slice the index of the slice along the viewing direction.
+     * @param pixels the ARGB output, view.width * view.height long.
+     */
+    public void render(View view, int slice, int[] pixels) {
+        render(view, slice, pixels, () -> false);
+    }
+
+    /**
+     * Renders one slice of a view, giving up part way if it is cancelled.
+     * @param view which way to cut through the volume.
+     * @param slice the index of the slice along the viewing direction.
+     * @param pixels the ARGB output, view.width * view.height long.
+     * @param cancelled returns true once the image is no longer wanted.
+     * @return whether the image was finished.
+     */
+    public boolean render(View view, int slice, int[] pixels, BooleanSupplier cancelled) {
+        return engine.render(pixels, view.width(volume), view.height(volume),
+                (out, width, fromRow, toRow) -> renderRows(view, slice, out, width, fromRow, toRow), cancelled);
+    }
+
+    private void renderRows(View view, int slice, int[] pixels, int width, int fromRow, int toRow) {
+        for (int j = fromRow; j < toRow; j++) {
+            for (int i = 0, pixel = j * width; i < width; i++, pixel++) {
+                short datum = volume.get(view.coordinate(0, i, j, slice), view.coordinate(1, i, j, slice),
+                        view.coordinate(2, i, j, slice));
+                pixels[pixel] = greyTable.argb(datum);
+            }
+        }
+    }
+}
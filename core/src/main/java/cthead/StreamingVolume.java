@@ -0,0 +1,193 @@
+package cthead;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class reads a raw volume from its file on demand, for volumes too big to hold in memory. The file is
+ * split into slabs of whole slices. A slab is mapped and copied in the first time a voxel in it is read, and
+ * only as many slabs as fit in the memory budget are kept. When another is needed the clock algorithm
+ * picks one that has not been read from recently to drop.
+ * <p>
+ * Nothing is read up front, so the min and max are those of the voxel type rather than of the data.
+ * Voxels can be read from any number of threads.
+ */
+public class StreamingVolume extends Volume implements AutoCloseable {
+    // slabs are made as many slices deep as fit in this, rounded down to a power of two.
+    public static final long DEFAULT_SLAB_BYTES = 8L << 20;
+    // a grey window covering the usual 12 bit CT range, as the real range is not known up front.
+    public static final double DEFAULT_LEVEL = 1023.5;
+    public static final double DEFAULT_WINDOW = 4095;
+    // enough slabs for a slice and its neighbours above and below to be in memory at once.
+    private static final int MIN_RESIDENT_SLABS = 4;
+
+    private final FileChannel channel;
+    private final int slabShift;
+    private final int slabMask;
+    private final int sliceVoxels;
+    private final AtomicReferenceArray<short[]> slabs;
+    // the clock's reference bits, set when a slab is read and cleared as the hand passes.
+    private final boolean[] used;
+    private final int maxResident;
+    private int resident;
+    private int hand;
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private StreamingVolume(FileChannel channel, int width, int height, int depth, int slabShift, int maxResident) {
+        super(width, height, depth, Short.MIN_VALUE, Short.MAX_VALUE);
+        this.channel = channel;
+        this.slabShift = slabShift;
+        this.slabMask = (1 << slabShift) - 1;
+        this.sliceVoxels = width * height;
+        int slabCount = ((depth - 1) >> slabShift) + 1;
+        this.slabs = new AtomicReferenceArray<>(slabCount);
+        this.used = new boolean[slabCount];
+        this.maxResident = maxResident;
+    }
+
+    /**
+     * Opens a raw file of little-endian 16 bit voxels without reading it.
+     * @param budgetBytes how much memory the slabs in memory may take, at least a few slabs are always kept.
+     * @throws IOException if the file cannot be opened or is too small for the dimensions.
+     */
+    public static StreamingVolume open(Path path, int width, int height, int depth, long budgetBytes)
+            throws IOException {
+        long sliceBytes = (long) width * height * Short.BYTES;
+        if (width <= 0 || height <= 0 || depth <= 0 || sliceBytes > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Unsupported volume size " + width + "x" + height + "x" + depth);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() < sliceBytes * depth) {
+            channel.close();
+            throw new IOException(path + " holds " + channel.size() + " bytes but " + width + "x" + height + "x"
+                    + depth + " needs " + sliceBytes * depth);
+        }
+        int slabShift = 0;
+        while ((sliceBytes << (slabShift + 1)) <= DEFAULT_SLAB_BYTES && (1 << slabShift) < depth) {
+            slabShift++;
+        }
+        int maxResident = (int) Math.max(MIN_RESIDENT_SLABS, budgetBytes / (sliceBytes << slabShift));
+        return new StreamingVolume(channel, width, height, depth, slabShift, maxResident);
+    }
+
+    @Override
+    public short get(int x, int y, int z) {
+        return slab(z >> slabShift)[((z & slabMask) * height() + y) * width() + x];
+    }
+
+    @Override
+    public void copyRow(int y, int z, short[] row) {
+        System.arraycopy(slab(z >> slabShift), ((z & slabMask) * height() + y) * width(), row, 0, width());
+    }
+
+    /**
+     * @return the voxels of a slab, loading it if it is not in memory.
+     */
+    private short[] slab(int index) {
+        short[] slab = slabs.get(index);
+        if (slab == null) {
+            slab = load(index);
+        }
+        if (!used[index]) {
+            used[index] = true;
+        }
+        return slab;
+    }
+
+    private synchronized short[] load(int index) {
+        short[] slab = slabs.get(index);
+        if (slab != null) {
+            return slab;
+        }
+        if (resident == maxResident) {
+            evict();
+        }
+        try {
+            slab = readSlab(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        slabs.set(index, slab);
+        resident++;
+        loads.incrementAndGet();
+        return slab;
+    }
+
+    /**
+     * Drops the first slab the clock hand finds that has not been read since the hand last passed it.
+     * A thread still reading a dropped slab keeps its own reference, so it is never read half freed.
+     */
+    private void evict() {
+        while (true) {
+            hand = (hand + 1) % used.length;
+            if (slabs.get(hand) == null) {
+                continue;
+            }
+            if (used[hand]) {
+                used[hand] = false;
+                continue;
+            }
+            slabs.set(hand, null);
+            resident--;
+            evictions.incrementAndGet();
+            return;
+        }
+    }
+
+    /**
+     * Reads a slab straight from the file without keeping it, for a pass over the whole volume that
+     * should not push out the slabs in use.
+     */
+    public short[] readSlab(int index) throws IOException {
+        int firstSlice = index << slabShift;
+        int slices = Math.min(slabDepth(), depth() - firstSlice);
+        short[] slab = new short[slices * sliceVoxels];
+        channel.map(FileChannel.MapMode.READ_ONLY, (long) firstSlice * sliceVoxels * Short.BYTES,
+                (long) slab.length * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(slab);
+        return slab;
+    }
+
+    /**
+     * @return the number of slices in a slab, the last slab may have fewer.
+     */
+    public int slabDepth() {
+        return 1 << slabShift;
+    }
+
+    public int slabCount() {
+        return slabs.length();
+    }
+
+    /**
+     * @return how many slabs have been read from the file for get() and copyRow().
+     */
+    public long loads() {
+        return loads.get();
+    }
+
+    /**
+     * @return how many slabs have been dropped to stay within the budget.
+     */
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the memory taken by the slabs currently held.
+     */
+    public synchronized long residentBytes() {
+        return (long) resident * sliceVoxels * slabDepth() * Short.BYTES;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,143 @@
+package cthead;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class maps a voxel value to a colour and an opacity. It is given as control points sorted by
+ * value, and values between two points are linearly interpolated. Below the first point and above the
+ * last the end points are used. A hard band is made by putting two points one value apart.
+ * Transfer functions never change once made, a changed one is a new object.
+ */
+public class TransferFunction {
+    // the ranges of Hounsfield units used to classify the CThead.
+    public static final int SKIN_LOW = -300;
+    public static final int SKIN_HIGH = 49;
+    public static final int BONE_LOW = 300;
+    public static final int BONE_HIGH = 4096;
+    public static final double BONE_OPACITY = 0.8;
+
+    private final ControlPoint[] points;
+
+    /**
+     * A colour and opacity pinned to a voxel value.
+     */
+    public static final class ControlPoint {
+        final int value;
+        final double red;
+        final double green;
+        final double blue;
+        final double opacity;
+
+        public ControlPoint(int value, double red, double green, double blue, double opacity) {
+            this.value = value;
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+            this.opacity = opacity;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ControlPoint)) {
+                return false;
+            }
+            ControlPoint point = (ControlPoint) other;
+            return value == point.value && red == point.red && green == point.green
+                    && blue == point.blue && opacity == point.opacity;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(new double[] {value, red, green, blue, opacity});
+        }
+    }
+
+    /**
+     * @param points the control points, sorted by strictly increasing value.
+     */
+    public TransferFunction(List<ControlPoint> points) {
+        if (points.isEmpty()) {
+            throw new IllegalArgumentException("A transfer function needs at least one control point");
+        }
+        for (int p = 1; p < points.size(); p++) {
+            if (points.get(p).value <= points.get(p - 1).value) {
+                throw new IllegalArgumentException("Control points must be sorted by increasing value");
+            }
+        }
+        this.points = points.toArray(new ControlPoint[0]);
+    }
+
+    /**
+     * The transfer function used for the CThead: skin is a light peach with the given opacity,
+     * bone is white with opacity 0.8, air and soft tissue are fully transparent.
+     * @param skinOpacity the opacity given to skin.
+     */
+    public static TransferFunction ctHead(double skinOpacity) {
+        List<ControlPoint> points = new ArrayList<>();
+        points.add(new ControlPoint(SKIN_LOW - 1, 0, 0, 0, 0));
+        points.add(new ControlPoint(SKIN_LOW, 1, 0.79, 0.6, skinOpacity));
+        points.add(new ControlPoint(SKIN_HIGH, 1, 0.79, 0.6, skinOpacity));
+        points.add(new ControlPoint(SKIN_HIGH + 1, 1, 1, 1, 0));
+        points.add(new ControlPoint(BONE_LOW - 1, 1, 1, 1, 0));
+        points.add(new ControlPoint(BONE_LOW, 1, 1, 1, BONE_OPACITY));
+        points.add(new ControlPoint(BONE_HIGH, 1, 1, 1, BONE_OPACITY));
+        points.add(new ControlPoint(BONE_HIGH + 1, 0, 0, 0, 0));
+        return new TransferFunction(points);
+    }
+
+    /**
+     * @return the skin opacity if this is ctHead(skinOpacity), otherwise NaN.
+     */
+    public double ctHeadSkinOpacity() {
+        double skinOpacity = points.length > 1 ? points[1].opacity : Double.NaN;
+        return equals(ctHead(skinOpacity)) ? skinOpacity : Double.NaN;
+    }
+
+    /**
+     * @return the control points, sorted by value.
+     */
+    public List<ControlPoint> points() {
+        return Collections.unmodifiableList(Arrays.asList(points));
+    }
+
+    /**
+     * Works out the colour and opacity of a value.
+     * @param value the voxel value.
+     * @param out filled with red, green, blue and opacity.
+     */
+    public void evaluate(int value, double[] out) {
+        int upper = 0;
+        while (upper < points.length && points[upper].value < value) {
+            upper++;
+        }
+        if (upper == 0 || upper == points.length) {
+            ControlPoint end = points[Math.min(upper, points.length - 1)];
+            set(out, end.red, end.green, end.blue, end.opacity);
+            return;
+        }
+        ControlPoint a = points[upper - 1], b = points[upper];
+        double t = (double) (value - a.value) / (b.value - a.value);
+        set(out, a.red + t * (b.red - a.red), a.green + t * (b.green - a.green),
+                a.blue + t * (b.blue - a.blue), a.opacity + t * (b.opacity - a.opacity));
+    }
+
+    private static void set(double[] out, double red, double green, double blue, double opacity) {
+        out[0] = red;
+        out[1] = green;
+        out[2] = blue;
+        out[3] = opacity;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof TransferFunction && Arrays.equals(points, ((TransferFunction) other).points);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(points);
+    }
+}
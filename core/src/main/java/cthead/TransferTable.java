@@ -0,0 +1,150 @@
+package cthead;
+
+import java.util.List;
+
+/**
+ * This class is a transfer function compiled into a lookup table covering every value from the volume's
+ * min to its max, so the renderer classifies a voxel with a single array load instead of a chain of
+ * comparisons. Each value has four floats: red, green and blue already multiplied by the opacity, and
+ * the fraction of light let through (1 - opacity).
+ * <p>
+ * The opacities are for samples one voxel apart. A table for samples further apart, such as one for a
+ * half resolution copy of the volume, corrects each opacity so the same thickness lets the same light through.
+ * <p>
+ * When the transfer function changes only the entries between the neighbours of the changed control
+ * points are recomputed. The table is not thread safe, it must not be updated while a render reads it.
+ */
+public class TransferTable {
+    public static final int ENTRY_SIZE = 4;
+
+    private final int offset;
+    private final int size;
+    private final double sampleSpacing;
+    private final float[] entries;
+    // visibleBefore[e] counts the entries below e with an opacity above 0, for brick tests.
+    private final int[] visibleBefore;
+    private TransferFunction function;
+
+    /**
+     * @param function the transfer function to compile.
+     * @param min the smallest value in the volume.
+     * @param max the largest value in the volume.
+     */
+    public TransferTable(TransferFunction function, short min, short max) {
+        this(function, min, max, 1);
+    }
+
+    /**
+     * @param function the transfer function to compile.
+     * @param min the smallest value in the volume.
+     * @param max the largest value in the volume.
+     * @param sampleSpacing the distance between samples along a ray, in voxels of the full volume.
+     */
+    public TransferTable(TransferFunction function, short min, short max, double sampleSpacing) {
+        this.offset = min;
+        this.size = max - min + 1;
+        this.sampleSpacing = sampleSpacing;
+        this.entries = new float[size * ENTRY_SIZE];
+        this.visibleBefore = new int[size + 1];
+        this.function = function;
+        fill(0, size);
+        countVisible(0);
+    }
+
+    /**
+     * Switches to a new transfer function, recomputing only the part of the table it changes.
+     * @param newFunction the transfer function to use from now on.
+     * @return whether the table changed at all.
+     */
+    public boolean update(TransferFunction newFunction) {
+        if (newFunction.equals(function)) {
+            return false;
+        }
+        List<TransferFunction.ControlPoint> before = function.points();
+        List<TransferFunction.ControlPoint> after = newFunction.points();
+        function = newFunction;
+
+        if (!sameValues(before, after)) {
+            fill(0, size);
+            countVisible(0);
+            return true;
+        }
+        int firstDirty = size;
+        for (int p = 0; p < after.size(); p++) {
+            if (after.get(p).equals(before.get(p))) {
+                continue;
+            }
+            // a control point only shapes the segments either side of it.
+            int from = p == 0 ? 0 : after.get(p - 1).value - offset;
+            int to = p == after.size() - 1 ? size : after.get(p + 1).value - offset + 1;
+            from = Math.max(0, from);
+            to = Math.min(size, to);
+            if (from < to) {
+                fill(from, to);
+                firstDirty = Math.min(firstDirty, from);
+            }
+        }
+        countVisible(firstDirty);
+        return true;
+    }
+
+    private static boolean sameValues(List<TransferFunction.ControlPoint> a, List<TransferFunction.ControlPoint> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int p = 0; p < a.size(); p++) {
+            if (a.get(p).value != b.get(p).value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void fill(int from, int to) {
+        double[] colour = new double[4];
+        for (int e = from; e < to; e++) {
+            function.evaluate(e + offset, colour);
+            double opacity = sampleSpacing == 1 ? colour[3] : 1 - Math.pow(1 - colour[3], sampleSpacing);
+            entries[e * ENTRY_SIZE] = (float) (colour[0] * opacity);
+            entries[e * ENTRY_SIZE + 1] = (float) (colour[1] * opacity);
+            entries[e * ENTRY_SIZE + 2] = (float) (colour[2] * opacity);
+            entries[e * ENTRY_SIZE + 3] = (float) (1 - opacity);
+        }
+    }
+
+    private void countVisible(int from) {
+        for (int e = from; e < size; e++) {
+            visibleBefore[e + 1] = visibleBefore[e] + (entries[e * ENTRY_SIZE + 3] < 1 ? 1 : 0);
+        }
+    }
+
+    /**
+     * @return whether every value from low to high (inclusive) has opacity 0.
+     */
+    public boolean isTransparent(int low, int high) {
+        int from = Math.max(0, low - offset);
+        int to = Math.min(size, high - offset + 1);
+        return from >= to || visibleBefore[to] == visibleBefore[from];
+    }
+
+    /**
+     * @return the table, ENTRY_SIZE floats for each value starting at offset().
+     */
+    public float[] entries() {
+        return entries;
+    }
+
+    /**
+     * @return the voxel value of the first entry, a voxel's entry is at (value - offset) * ENTRY_SIZE.
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * @return the transfer function the table currently holds.
+     */
+    public TransferFunction function() {
+        return function;
+    }
+}
@@ -0,0 +1,196 @@
+package cthead;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The vector compositing kernel of the volume renderer, for the axis aligned views with one sample per
+ * voxel and a CThead transfer function. Every sample of those views is on a voxel centre, so the rays of
+ * an image row go through the volume together one slice at a time, and the voxels they meet in a slice
+ * are a row of the volume. Each packet of rays, one per float lane, loads its voxels as a vector,
+ * classifies them as skin, bone or neither with compare masks and picks the colour and transparency of
+ * their class with blends, so no table lookup is needed. The lanes whose rays still let at least epsilon
+ * through then composite the sample behind what they have gathered.
+ * <p>
+ * The voxels are widened to floats with a plain loop before they are loaded, as on JDK 17 the JIT does
+ * not compile a vector conversion from shorts to floats into instructions and boxes the vectors instead.
+ * <p>
+ * Slices where every brick the row passes through is empty are skipped, and a row stops as soon as
+ * none of its rays lets epsilon through. Colours are accumulated in floats rather than doubles, so
+ * pixels can differ from the scalar kernel by a grey level.
+ * Only this class touches jdk.incubator.vector, so nothing else fails to load when that module is absent.
+ */
+final class VectorCompositor {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private VectorCompositor() {
+    }
+
+    /**
+     * Casts the rays of the rows fromRow (inclusive) to toRow (exclusive) of an axis aligned view.
+     * @param skin the table entry every skin value shares.
+     * @param bone the table entry every bone value shares.
+     * @param stats counts the samples and early stops of the band, may be null.
+     */
+    static void renderRows(Volume volume, BrickMap bricks, View view, float[] skin, float[] bone, double epsilon,
+                           boolean[] emptyBricks, RenderStats stats, int[] pixels, int width, int fromRow,
+                           int toRow) {
+        int depth = view.depth(volume);
+        int padded = (width + LANES - 1) / LANES * LANES;
+        short[] row = new short[Math.max(padded, volume.width())];
+        float[] rowValues = new float[padded];
+        // side to side rays run along the volume's rows, so their voxels are read and transposed a brick
+        // deep at a time as the rays reach them.
+        int chunkDepth = bricks.brickSize();
+        float[] transposed = view == View.SIDE_TO_SIDE ? new float[chunkDepth * padded] : null;
+        float[] red = new float[padded], green = new float[padded], blue = new float[padded];
+        float[] transparency = new float[padded];
+        boolean[] emptySlices = new boolean[depth];
+        float limit = (float) epsilon;
+        long sampleCount = 0, terminatedCount = 0;
+
+        for (int j = fromRow; j < toRow; j++) {
+            findEmptySlices(bricks, view, j, width, emptyBricks, emptySlices);
+            int chunk = -1;
+            for (int i = 0; i < padded; i++) {
+                red[i] = green[i] = blue[i] = 0;
+                // the lanes past the end of the row start with no light, so they never hold a row up.
+                transparency[i] = i < width ? 1 : 0;
+            }
+            for (int w = 0; w < depth; w++) {
+                if (emptySlices[w]) {
+                    continue;
+                }
+                float[] values;
+                int base;
+                if (transposed != null) {
+                    if (w / chunkDepth != chunk) {
+                        chunk = w / chunkDepth;
+                        transpose(volume, j, chunk * chunkDepth, transposed, padded);
+                    }
+                    values = transposed;
+                    base = (w - chunk * chunkDepth) * padded;
+                } else {
+                    // top down rows are at (y = j, z = w), front to back rows at (y = w, z = j).
+                    if (view == View.TOP_DOWN) {
+                        volume.copyRow(j, w, row);
+                    } else {
+                        volume.copyRow(w, j, row);
+                    }
+                    for (int i = 0; i < width; i++) {
+                        rowValues[i] = row[i];
+                    }
+                    values = rowValues;
+                    base = 0;
+                }
+                long composited = compositeSlice(values, base, skin, bone, limit, red, green, blue, transparency);
+                sampleCount += composited >> 1;
+                if ((composited & 1) == 0) {
+                    break;
+                }
+            }
+            for (int i = 0; i < width; i++) {
+                if (transparency[i] < limit) {
+                    terminatedCount++;
+                }
+                pixels[j * width + i] = VolumeRenderer.argb(red[i], green[i], blue[i]);
+            }
+        }
+        if (stats != null) {
+            stats.addRays((long) (toRow - fromRow) * width, sampleCount, terminatedCount);
+        }
+    }
+
+    /**
+     * Composites the samples of one slice behind what a row's rays have gathered. This is kept out of
+     * renderRows so the JIT compiles it once for every view, rather than recompiling the whole march
+     * whenever another view takes a different branch and running the vectors boxed in the meantime.
+     * @param values the row's voxels in this slice, from base on.
+     * @return twice the number of samples composited, plus one if any ray still lets epsilon through.
+     */
+    private static long compositeSlice(float[] values, int base, float[] skin, float[] bone, float limit,
+                                       float[] red, float[] green, float[] blue, float[] transparency) {
+        FloatVector skinLow = FloatVector.broadcast(SPECIES, TransferFunction.SKIN_LOW);
+        FloatVector skinHigh = FloatVector.broadcast(SPECIES, TransferFunction.SKIN_HIGH);
+        FloatVector boneLow = FloatVector.broadcast(SPECIES, TransferFunction.BONE_LOW);
+        FloatVector boneHigh = FloatVector.broadcast(SPECIES, TransferFunction.BONE_HIGH);
+        FloatVector none = FloatVector.zero(SPECIES), clear = FloatVector.broadcast(SPECIES, 1f);
+        FloatVector skinRed = FloatVector.broadcast(SPECIES, skin[0]);
+        FloatVector skinGreen = FloatVector.broadcast(SPECIES, skin[1]);
+        FloatVector skinBlue = FloatVector.broadcast(SPECIES, skin[2]);
+        FloatVector skinTransparency = FloatVector.broadcast(SPECIES, skin[3]);
+        FloatVector boneRed = FloatVector.broadcast(SPECIES, bone[0]);
+        FloatVector boneGreen = FloatVector.broadcast(SPECIES, bone[1]);
+        FloatVector boneBlue = FloatVector.broadcast(SPECIES, bone[2]);
+        FloatVector boneTransparency = FloatVector.broadcast(SPECIES, bone[3]);
+        long samples = 0;
+        boolean anyLeft = false;
+        for (int i = 0; i < transparency.length; i += LANES) {
+            FloatVector through = FloatVector.fromArray(SPECIES, transparency, i);
+            VectorMask<Float> alive = through.compare(VectorOperators.GE, limit);
+            if (!alive.anyTrue()) {
+                continue;
+            }
+            samples += alive.trueCount();
+            FloatVector value = FloatVector.fromArray(SPECIES, values, base + i);
+            VectorMask<Float> isSkin = value.compare(VectorOperators.GE, skinLow)
+                    .and(value.compare(VectorOperators.LE, skinHigh)).and(alive);
+            VectorMask<Float> isBone = value.compare(VectorOperators.GE, boneLow)
+                    .and(value.compare(VectorOperators.LE, boneHigh)).and(alive);
+            VectorMask<Float> seen = isSkin.or(isBone);
+            if (!seen.anyTrue()) {
+                anyLeft = true;
+                continue;
+            }
+            FloatVector sampleRed = none.blend(skinRed, isSkin).blend(boneRed, isBone);
+            FloatVector sampleGreen = none.blend(skinGreen, isSkin).blend(boneGreen, isBone);
+            FloatVector sampleBlue = none.blend(skinBlue, isSkin).blend(boneBlue, isBone);
+            FloatVector sampleTransparency = clear.blend(skinTransparency, isSkin).blend(boneTransparency, isBone);
+            through.fma(sampleRed, FloatVector.fromArray(SPECIES, red, i)).intoArray(red, i);
+            through.fma(sampleGreen, FloatVector.fromArray(SPECIES, green, i)).intoArray(green, i);
+            through.fma(sampleBlue, FloatVector.fromArray(SPECIES, blue, i)).intoArray(blue, i);
+            through = through.mul(sampleTransparency);
+            through.intoArray(transparency, i);
+            anyLeft |= through.compare(VectorOperators.GE, limit).anyTrue();
+        }
+        return samples << 1 | (anyLeft ? 1 : 0);
+    }
+
+    /**
+     * Marks the slices of row j where every brick the row's rays pass through is empty.
+     */
+    private static void findEmptySlices(BrickMap bricks, View view, int j, int width, boolean[] emptyBricks,
+                                        boolean[] emptySlices) {
+        int brickShift = bricks.brickShift();
+        int bricksX = bricks.size(0), bricksY = bricks.size(1);
+        int[] brick = new int[3];
+        for (int w = 0; w < emptySlices.length; w += bricks.brickSize()) {
+            boolean empty = true;
+            brick[view.vAxis] = j >> brickShift;
+            brick[view.wAxis] = w >> brickShift;
+            for (int u = 0; u <= (width - 1) >> brickShift && empty; u++) {
+                brick[view.uAxis] = u;
+                empty = emptyBricks[(brick[2] * bricksY + brick[1]) * bricksX + brick[0]];
+            }
+            for (int k = w; k < Math.min(w + bricks.brickSize(), emptySlices.length); k++) {
+                emptySlices[k] = empty;
+            }
+        }
+    }
+
+    /**
+     * Reads the voxels of the side to side slice of row j, z = j, from x = fromX on as deep as the
+     * transposed array holds, so that the voxels at x = fromX + k are contiguous from k * stride.
+     */
+    private static void transpose(Volume volume, int j, int fromX, float[] transposed, int stride) {
+        int toX = Math.min(volume.width(), fromX + transposed.length / stride);
+        for (int y = 0; y < volume.height(); y++) {
+            for (int x = fromX; x < toX; x++) {
+                transposed[(x - fromX) * stride + y] = volume.get(x, y, j);
+            }
+        }
+    }
+}
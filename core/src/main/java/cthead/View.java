@@ -0,0 +1,50 @@
+package cthead;
+
+/**
+ * The three axis aligned ways of looking at the volume. Each view maps image column i to the u axis,
+ * image row j to the v axis and walks the w axis for depth (0 = x, 1 = y, 2 = z).
+ */
+public enum View {
+    TOP_DOWN(0, 1, 2),      // top of head to spinal cord
+    FRONT_BACK(0, 2, 1),    // nose to back of head
+    SIDE_TO_SIDE(1, 2, 0);  // ear to ear
+
+    final int uAxis;
+    final int vAxis;
+    final int wAxis;
+
+    View(int uAxis, int vAxis, int wAxis) {
+        this.uAxis = uAxis;
+        this.vAxis = vAxis;
+        this.wAxis = wAxis;
+    }
+
+    /**
+     * @return the width of the image this view produces of the grid.
+     */
+    public int width(Grid grid) {
+        return grid.size(uAxis);
+    }
+
+    /**
+     * @return the height of the image this view produces of the grid.
+     */
+    public int height(Grid grid) {
+        return grid.size(vAxis);
+    }
+
+    /**
+     * @return the number of slices along the viewing direction.
+     */
+    public int depth(Grid grid) {
+        return grid.size(wAxis);
+    }
+
+    /**
+     * @param axis 0 for x, 1 for y, 2 for z.
+     * @return the voxel coordinate along the axis for image column i, row j and slice k.
+     */
+    public int coordinate(int axis, int i, int j, int k) {
+        return axis == uAxis ? i : axis == vAxis ? j : k;
+    }
+}
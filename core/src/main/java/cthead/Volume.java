@@ -0,0 +1,68 @@
+package cthead;
+
+/**
+ * This class is a 3D CT volume of 16 bit voxels. How the voxels are laid out in memory is up to the
+ * subclass, everything that reads the volume goes through get() or copyRow().
+ */
+public abstract class Volume implements Grid {
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final short min;
+    private final short max;
+
+    /**
+     * @param width number of voxels along the x axis.
+     * @param height number of voxels along the y axis.
+     * @param depth number of voxels along the z axis.
+     * @param min the smallest value in the data.
+     * @param max the largest value in the data.
+     */
+    protected Volume(int width, int height, int depth, short min, short max) {
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return the value of the voxel at (x, y, z).
+     */
+    public abstract short get(int x, int y, int z);
+
+    /**
+     * Copies the row of voxels at (y, z) running along the x axis.
+     * @param row filled with the width() voxels of the row.
+     */
+    public void copyRow(int y, int z, short[] row) {
+        for (int x = 0; x < width; x++) {
+            row[x] = get(x, y, z);
+        }
+    }
+
+    @Override
+    public int size(int axis) {
+        return axis == 0 ? width : axis == 1 ? height : depth;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public short min() {
+        return min;
+    }
+
+    public short max() {
+        return max;
+    }
+}
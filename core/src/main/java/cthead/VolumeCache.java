@@ -0,0 +1,565 @@
+package cthead;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * This class keeps a loaded volume and what was worked out from it in one file, so a restart can map the
+ * file instead of reading the raw volume and rebuilding everything. The file holds the voxels and the brick
+ * min/max map. The quantized normals, once they have been computed, go in a sibling file named after it
+ * with ".normals" on the end, so storing them never replaces a voxel file that is still mapped.
+ * <p>
+ * The voxels are stored as they are in memory by default, x fastest or in the bricks of BrickedVolume,
+ * and read back as a MappedVolume or MappedBrickedVolume over the file, so opening the cache reads nothing
+ * but the brick map and normals. Asking for the other layout than the file was written in copies the
+ * voxels into memory. They can instead be compressed brick
+ * by brick: each voxel is stored as the zigzagged difference from the one before it, in one to three
+ * bytes, so the large runs of air and soft tissue in a CT scan take a byte a voxel. That roughly halves
+ * the file, but the bricks have to be decoded into memory, in parallel, before anything can be shown.
+ * They are decoded straight into the layout asked for.
+ * <p>
+ * The header records the size and modification time of the raw file. If either has changed, the file
+ * was written by another version of this class or the voxels are stored the other way, the cache is
+ * ignored and built again. The header is checked before anything is mapped, so a file that is built
+ * again is never mapped while it is replaced. The whole file is mapped at once, so caches over 2GB are
+ * not written.
+ * <pre>
+ *  0  "CTHEADVC"        24  source size          48  brick map brick size
+ *  8  version           32  source modified      52  voxel brick size, 0 for x fastest
+ * 12  width, height,    40  min, max (shorts)    56  file length
+ *     depth             44  compressed brick size, 0 for uncompressed voxels
+ * 64  brick map min, brick map max, then either the voxels, or brick offsets (longs) and the compressed
+ *     bricks
+ * </pre>
+ * The normals file has its own header, checked against the raw file the same way, and is read into
+ * memory rather than mapped.
+ * <pre>
+ *  0  "CTHEADVN"        12  width, height, depth     32  source modified
+ *  8  version           24  source size              40  gradient stride, then the codes x fastest
+ * </pre>
+ */
+public class VolumeCache {
+    public static final int VERSION = 3;
+    // the edge length of the compressed bricks.
+    public static final int BRICK_SIZE = 16;
+
+    private static final byte[] MAGIC = "CTHEADVC".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NORMALS_MAGIC = "CTHEADVN".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_BYTES = 64;
+    private static final int NORMALS_HEADER_BYTES = 44;
+    // uncompressed voxels are written this many rows at a time.
+    private static final int WRITE_ROWS = 256;
+
+    private final Path path;
+    private final long sourceSize;
+    private final long sourceModified;
+    private final Volume volume;
+    private final BrickMap bricks;
+    private GradientVolume gradients;
+    private final boolean compressed;
+    private boolean rebuilt;
+    private long openNanos;
+    private IOException writeError;
+
+    private VolumeCache(Path path, long sourceSize, long sourceModified, Volume volume, BrickMap bricks,
+                        GradientVolume gradients, boolean compressed) {
+        this.path = path;
+        this.sourceSize = sourceSize;
+        this.sourceModified = sourceModified;
+        this.volume = volume;
+        this.bricks = bricks;
+        this.gradients = gradients;
+        this.compressed = compressed;
+    }
+
+    /**
+     * Reads the cache of a raw volume, or if it is missing or out of date loads the raw volume and writes
+     * the cache again. A cache that cannot be written is ignored, see writeError().
+     * @param path the cache file.
+     * @param source the raw file, as VolumeLoader reads it.
+     * @param compress whether the voxels should be compressed. A cache stored the other way is built again.
+     * @param brickSize the edge length of the bricks the volume is wanted in, 0 for x fastest. A new cache
+     * is written in this layout.
+     */
+    public static VolumeCache open(Path path, Path source, int width, int height, int depth, boolean compress,
+                                   int brickSize) throws IOException {
+        long start = System.nanoTime();
+        VolumeCache cache = read(path, source, width, height, depth, compress, brickSize);
+        if (cache == null) {
+            LinearVolume loaded = VolumeLoader.load(source, width, height, depth);
+            Volume volume = brickSize == 0 ? loaded : new BrickedVolume(loaded, brickSize);
+            cache = new VolumeCache(path, Files.size(source), modified(source), volume,
+                    new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE), readGradients(path, source, volume),
+                    compress);
+            cache.rebuilt = true;
+            cache.save();
+        }
+        cache.openNanos = System.nanoTime() - start;
+        return cache;
+    }
+
+    /**
+     * Maps a cache file, decoding the voxels if they are compressed, and reads its normals file.
+     * @param compressed whether the voxels should be compressed.
+     * @param brickSize the edge length of the bricks the volume is wanted in, 0 for x fastest.
+     * @return the cache, or null if there is none, it is damaged, it does not match the raw file or its
+     * voxels are not compressed the way asked for.
+     */
+    public static VolumeCache read(Path path, Path source, int width, int height, int depth, boolean compressed,
+                                   int brickSize) throws IOException {
+        long sourceSize = Files.size(source);
+        long sourceModified = modified(source);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE
+                    || !readFully(channel, header)) {
+                return null;
+            }
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION
+                    || header.getInt() != width || header.getInt() != height || header.getInt() != depth
+                    || header.getLong() != sourceSize || header.getLong() != sourceModified) {
+                return null;
+            }
+            short min = header.getShort();
+            short max = header.getShort();
+            int compressedSize = header.getInt();
+            int mapBrickSize = header.getInt();
+            int voxelBrickSize = header.getInt();
+            if (header.getLong() != channel.size() || compressedSize != (compressed ? BRICK_SIZE : 0)
+                    || mapBrickSize != BrickMap.DEFAULT_BRICK_SIZE) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            mapped.position(HEADER_BYTES);
+
+            int mapX = ceilDiv(width, mapBrickSize), mapY = ceilDiv(height, mapBrickSize);
+            int mapZ = ceilDiv(depth, mapBrickSize);
+            short[] brickMin = new short[mapX * mapY * mapZ];
+            short[] brickMax = new short[brickMin.length];
+            mapped.asShortBuffer().get(brickMin);
+            mapped.position(mapped.position() + brickMin.length * 2);
+            mapped.asShortBuffer().get(brickMax);
+            mapped.position(mapped.position() + brickMax.length * 2);
+            BrickMap bricks = new BrickMap(mapBrickSize, mapX, mapY, mapZ, brickMin, brickMax);
+
+            Volume volume;
+            if (!compressed) {
+                BrickLayout layout = voxelBrickSize == 0 ? null
+                        : new BrickLayout(width, height, depth, voxelBrickSize);
+                int voxels = layout == null ? width * height * depth : layout.length();
+                if (channel.size() - mapped.position() != voxels * 2L) {
+                    return null;
+                }
+                volume = layout == null ? new MappedVolume(mapped.asShortBuffer(), width, height, depth, min, max)
+                        : new MappedBrickedVolume(mapped.asShortBuffer(), width, height, depth, min, max,
+                        voxelBrickSize);
+                if (voxelBrickSize != brickSize) {
+                    volume = copy(volume, brickSize);
+                }
+            } else {
+                int count = ceilDiv(width, BRICK_SIZE) * ceilDiv(height, BRICK_SIZE) * ceilDiv(depth, BRICK_SIZE);
+                long[] offsets = new long[count + 1];
+                mapped.asLongBuffer().get(offsets);
+                int dataStart = mapped.position() + offsets.length * 8;
+                BrickLayout layout = brickSize == 0 ? null : new BrickLayout(width, height, depth, brickSize);
+                short[] data = new short[layout == null ? width * height * depth : layout.length()];
+                IntStream.range(0, count).parallel().forEach(brick -> decode(mapped,
+                        (int) (dataStart + offsets[brick]), (int) (dataStart + offsets[brick + 1]), brick,
+                        data, layout, width, height, depth));
+                volume = layout == null ? new LinearVolume(data, width, height, depth, min, max)
+                        : new BrickedVolume(data, width, height, depth, min, max, brickSize);
+            }
+            return new VolumeCache(path, sourceSize, sourceModified, volume, bricks,
+                    readGradients(path, source, volume), compressed);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            // a truncated or damaged file is built again like a stale one.
+            return null;
+        }
+    }
+
+    /**
+     * Reads the normals file of a cache.
+     * @return the normals, or null if there are none, they are damaged or they do not match the raw file.
+     */
+    private static GradientVolume readGradients(Path path, Path source, Volume volume) throws IOException {
+        try (FileChannel channel = FileChannel.open(normalsPath(path), StandardOpenOption.READ)) {
+            if (channel.size() < NORMALS_HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(channel, buffer)) {
+                return null;
+            }
+            buffer.flip();
+            byte[] magic = new byte[NORMALS_MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, NORMALS_MAGIC) || buffer.getInt() != VERSION
+                    || buffer.getInt() != volume.width() || buffer.getInt() != volume.height()
+                    || buffer.getInt() != volume.depth() || buffer.getLong() != Files.size(source)
+                    || buffer.getLong() != modified(source)) {
+                return null;
+            }
+            int stride = buffer.getInt();
+            if (stride < 1) {
+                return null;
+            }
+            int gx = ceilDiv(volume.width(), stride), gy = ceilDiv(volume.height(), stride);
+            int gz = ceilDiv(volume.depth(), stride);
+            char[] codes = new char[gx * gy * gz];
+            if (buffer.remaining() != codes.length * 2) {
+                return null;
+            }
+            buffer.asCharBuffer().get(codes);
+            return new GradientVolume(gx, gy, gz, stride, codes);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static Path normalsPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".normals");
+    }
+
+    /**
+     * Reads until the buffer is full or the channel ends.
+     * @return whether the buffer was filled.
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a volume into memory in another layout.
+     * @param brickSize the edge length of the bricks, 0 for x fastest.
+     */
+    private static Volume copy(Volume volume, int brickSize) {
+        if (brickSize != 0) {
+            return new BrickedVolume(volume, brickSize);
+        }
+        int width = volume.width(), height = volume.height();
+        short[] data = new short[width * height * volume.depth()];
+        short[] row = new short[width];
+        for (int z = 0; z < volume.depth(); z++) {
+            for (int y = 0; y < height; y++) {
+                volume.copyRow(y, z, row);
+                System.arraycopy(row, 0, data, (z * height + y) * width, width);
+            }
+        }
+        return new LinearVolume(data, width, height, volume.depth(), volume.min(), volume.max());
+    }
+
+    private static long modified(Path source) throws IOException {
+        return Files.getLastModifiedTime(source).toMillis();
+    }
+
+    private static int ceilDiv(int voxels, int size) {
+        return (voxels + size - 1) / size;
+    }
+
+    /**
+     * @return the first voxel of a brick along each axis, and the voxel after its last.
+     */
+    private static int[] extent(int brick, int width, int height, int depth) {
+        int bricksX = ceilDiv(width, BRICK_SIZE), bricksY = ceilDiv(height, BRICK_SIZE);
+        int x0 = brick % bricksX * BRICK_SIZE;
+        int y0 = brick / bricksX % bricksY * BRICK_SIZE;
+        int z0 = brick / bricksX / bricksY * BRICK_SIZE;
+        return new int[] {x0, y0, z0, Math.min(width, x0 + BRICK_SIZE), Math.min(height, y0 + BRICK_SIZE),
+                Math.min(depth, z0 + BRICK_SIZE)};
+    }
+
+    /**
+     * Decodes one brick of the mapped file into the volume.
+     * @param from where the brick starts in the file.
+     * @param to where the next brick starts.
+     * @param layout where the voxels of data are stored, null for x fastest.
+     */
+    private static void decode(ByteBuffer mapped, int from, int to, int brick, short[] data, BrickLayout layout,
+                               int width, int height, int depth) {
+        int[] e = extent(brick, width, height, depth);
+        int position = from;
+        int previous = 0;
+        for (int z = e[2]; z < e[5]; z++) {
+            for (int y = e[1]; y < e[4]; y++) {
+                int row = (z * height + y) * width;
+                for (int x = e[0]; x < e[3]; x++) {
+                    int coded = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = mapped.get(position++);
+                        coded |= (b & 0x7f) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    previous += (coded >>> 1) ^ -(coded & 1);
+                    data[layout == null ? row + x : layout.index(x, y, z)] = (short) previous;
+                }
+            }
+        }
+        if (position != to) {
+            throw new IllegalArgumentException("Brick " + brick + " does not end where the table says");
+        }
+    }
+
+    /**
+     * Codes one brick onto the end of out, each voxel as the zigzagged difference from the one before.
+     */
+    private static void encode(Volume volume, int brick, ByteSink out) {
+        int[] e = extent(brick, volume.width(), volume.height(), volume.depth());
+        int previous = 0;
+        for (int z = e[2]; z < e[5]; z++) {
+            for (int y = e[1]; y < e[4]; y++) {
+                for (int x = e[0]; x < e[3]; x++) {
+                    short voxel = volume.get(x, y, z);
+                    int delta = voxel - previous;
+                    previous = voxel;
+                    int coded = (delta << 1) ^ (delta >> 31);
+                    while ((coded & ~0x7f) != 0) {
+                        out.put((byte) (coded & 0x7f | 0x80));
+                        coded >>>= 7;
+                    }
+                    out.put((byte) coded);
+                }
+            }
+        }
+    }
+
+    /**
+     * A growable byte array.
+     */
+    private static final class ByteSink {
+        private byte[] bytes = new byte[1 << 16];
+        private int length;
+
+        void put(byte b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = b;
+        }
+    }
+
+    /**
+     * Keeps the normals in the normals file of the cache, leaving the voxel file as it is.
+     * A failure is kept for writeError() rather than thrown as the cache is only an optimisation.
+     */
+    public void setGradients(GradientVolume gradients) {
+        this.gradients = gradients;
+        try {
+            writeGradients();
+            writeError = null;
+        } catch (IOException e) {
+            writeError = e;
+        }
+    }
+
+    /**
+     * Writes the voxel file to a temporary file and moves it into place, so a reader never sees half a
+     * file. Normals already in the normals file stay there, as they depend only on the raw file.
+     * Failures are kept for writeError() rather than thrown as the cache is only an optimisation.
+     */
+    private void save() {
+        try {
+            write();
+            writeError = null;
+        } catch (IOException e) {
+            writeError = e;
+        }
+    }
+
+    private void writeGradients() throws IOException {
+        char[] codes = gradients.codes();
+        ByteBuffer buffer = ByteBuffer.allocate(NORMALS_HEADER_BYTES + codes.length * 2)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(NORMALS_MAGIC).putInt(VERSION).putInt(volume.width()).putInt(volume.height())
+                .putInt(volume.depth()).putLong(sourceSize).putLong(sourceModified).putInt(gradients.stride());
+        buffer.asCharBuffer().put(codes);
+        buffer.clear();
+        Path normals = normalsPath(path);
+        Path temporary = normals.resolveSibling(normals.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, buffer);
+            }
+            Files.move(temporary, normals, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    private void write() throws IOException {
+        int width = volume.width(), height = volume.height(), depth = volume.depth();
+        long[] offsets = new long[0];
+        ByteSink packed = new ByteSink();
+        BrickedVolume bricked = volume instanceof BrickedVolume ? (BrickedVolume) volume : null;
+        long voxelBytes = (bricked == null ? (long) width * height * depth : bricked.data().length) * 2L;
+        if (compressed) {
+            int count = ceilDiv(width, BRICK_SIZE) * ceilDiv(height, BRICK_SIZE) * ceilDiv(depth, BRICK_SIZE);
+            offsets = new long[count + 1];
+            for (int brick = 0; brick < count; brick++) {
+                encode(volume, brick, packed);
+                offsets[brick + 1] = packed.length;
+            }
+            voxelBytes = packed.length;
+        }
+        long length = HEADER_BYTES + bricks.count() * 4L + offsets.length * 8L + voxelBytes;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("the cache would be over 2GB, too large to map");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(depth)
+                .putLong(sourceSize).putLong(sourceModified).putShort(volume.min()).putShort(volume.max())
+                .putInt(compressed ? BRICK_SIZE : 0).putInt(bricks.brickSize())
+                .putInt(compressed || bricked == null ? 0 : bricked.brickSize()).putLong(length);
+        ByteBuffer tables = ByteBuffer.allocate((int) (length - HEADER_BYTES - voxelBytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int brick = 0; brick < bricks.count(); brick++) {
+            tables.putShort(bricks.min(brick));
+        }
+        for (int brick = 0; brick < bricks.count(); brick++) {
+            tables.putShort(bricks.max(brick));
+        }
+        tables.asLongBuffer().put(offsets);
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                header.flip();
+                tables.clear();
+                writeFully(channel, header);
+                writeFully(channel, tables);
+                if (compressed) {
+                    writeFully(channel, ByteBuffer.wrap(packed.bytes, 0, packed.length));
+                } else if (bricked != null) {
+                    writeBricks(channel, bricked.data());
+                } else {
+                    writeVoxels(channel);
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the voxels x fastest, a batch of rows at a time.
+     */
+    private void writeVoxels(FileChannel channel) throws IOException {
+        int width = volume.width();
+        short[] row = new short[width];
+        ByteBuffer rows = ByteBuffer.allocate(WRITE_ROWS * width * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int z = 0; z < volume.depth(); z++) {
+            for (int y = 0; y < volume.height(); y++) {
+                volume.copyRow(y, z, row);
+                rows.asShortBuffer().put(row);
+                rows.position(rows.position() + width * 2);
+                if (!rows.hasRemaining()) {
+                    rows.flip();
+                    writeFully(channel, rows);
+                    rows.clear();
+                }
+            }
+        }
+        rows.flip();
+        writeFully(channel, rows);
+    }
+
+    /**
+     * Writes the voxels of a bricked volume as they are in memory, a batch at a time.
+     */
+    private static void writeBricks(FileChannel channel, short[] data) throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        for (int from = 0; from < data.length; from += batch.capacity() / 2) {
+            int count = Math.min(batch.capacity() / 2, data.length - from);
+            batch.clear();
+            batch.asShortBuffer().put(data, from, count);
+            batch.limit(count * 2);
+            writeFully(channel, batch);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return whether open() had to load the raw file because the cache was missing or out of date.
+     */
+    public boolean rebuilt() {
+        return rebuilt;
+    }
+
+    /**
+     * @return why the cache file could not be written last time, null if it was.
+     */
+    public IOException writeError() {
+        return writeError;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * @return the volume in the layout open() was asked for, mapped from the cache file unless it was
+     * compressed, rebuilt or written in the other layout.
+     */
+    public Volume volume() {
+        return volume;
+    }
+
+    /**
+     * @return the brick map of the volume with bricks of BrickMap.DEFAULT_BRICK_SIZE.
+     */
+    public BrickMap bricks() {
+        return bricks;
+    }
+
+    /**
+     * @return the cached normals, or null if none have been stored.
+     */
+    public GradientVolume gradients() {
+        return gradients;
+    }
+
+    /**
+     * @return a line saying whether the cache was read or rebuilt and how long it took, for printing.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "cache: %s %s in %d ms%s", rebuilt ? "rebuilt" : "read", path,
+                openNanos / 1_000_000, writeError == null ? "" : ", could not write it: " + writeError.getMessage());
+    }
+}
@@ -0,0 +1,69 @@
+package cthead;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class loads a raw volume of little-endian 16 bit voxels. Rather than reading the file a byte at a
+ * time it memory-maps it and copies it in bulk into one flat array, working out the min and max as it goes.
+ */
+public class VolumeLoader {
+    // the file is mapped in pieces of this many bytes so volumes over 2GB can still be read.
+    private static final long MAP_CHUNK_BYTES = 1L << 30;
+    // min/max are computed over blocks of this many voxels straight after they are copied, while still in cache.
+    private static final int BLOCK_VOXELS = 1 << 16;
+
+    private VolumeLoader() {
+    }
+
+    /**
+     * Reads a volume of the given dimensions from a raw file.
+     * @param path the raw file, two bytes per voxel in little-endian order.
+     * @param width number of voxels along the x axis.
+     * @param height number of voxels along the y axis.
+     * @param depth number of voxels along the z axis (the number of slices).
+     * @return the loaded volume, in file order.
+     * @throws IOException if the file cannot be read or is too small for the dimensions.
+     */
+    public static LinearVolume load(Path path, int width, int height, int depth) throws IOException {
+        long voxels = (long) width * height * depth;
+        if (width <= 0 || height <= 0 || depth <= 0 || voxels > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Unsupported volume size " + width + "x" + height + "x" + depth);
+        }
+        short[] data = new short[(int) voxels];
+        short min = Short.MAX_VALUE;
+        short max = Short.MIN_VALUE;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < voxels * 2) {
+                throw new IOException(path + " holds " + channel.size() + " bytes but " + width + "x" + height + "x"
+                        + depth + " needs " + voxels * 2);
+            }
+            int offset = 0;
+            while (offset < data.length) {
+                int count = (int) Math.min(data.length - offset, MAP_CHUNK_BYTES / 2);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset * 2L, count * 2L);
+                ShortBuffer shorts = mapped.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+
+                for (int block = 0; block < count; block += BLOCK_VOXELS) {
+                    int start = offset + block;
+                    int end = start + Math.min(BLOCK_VOXELS, count - block);
+                    shorts.get(data, start, end - start);
+                    // plain loop over the block so the JIT can vectorise it.
+                    for (int i = start; i < end; i++) {
+                        short read = data[i];
+                        min = (short) Math.min(min, read);
+                        max = (short) Math.max(max, read);
+                    }
+                }
+                offset += count;
+            }
+        }
+        return new LinearVolume(data, width, height, depth, min, max);
+    }
+}
@@ -0,0 +1,234 @@
+package cthead;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class holds the named parameters shared by the viewer and the batch renderer, written as --name=value.
+ * Parameters that are not given fall back to the CThead defaults.
+ * <ul>
+ * <li>--file=, --width=, --height= and --depth= give the raw file and its dimensions.</li>
+ * <li>--layout=linear keeps the volume in file order instead of Morton ordered bricks. --layout=stream reads
+ * it from the file on demand, keeping at most --streamCache= MB of it in memory. Volume renders are then
+ * made from a copy point sampled down to fit in the same amount of memory.</li>
+ * <li>--level= and --window= set the grey mapping of the slices, the default covers min to max.</li>
+ * <li>--epsilon= sets how little light must be left before a volume render ray stops.</li>
+ * <li>--step= sets the distance in voxels between samples along a ray.</li>
+ * <li>--kernel=vector composites the axis aligned views a row of rays at a time with the vector API, which
+ * needs the JVM started with --add-modules jdk.incubator.vector. Without it renders fall back to the default
+ * --kernel=scalar.</li>
+ * <li>--shading=phong lights the volume renders using the gradients, --gradientBudget= is the most memory
+ * (MB) the precomputed normals may take before they are kept on a coarser grid.</li>
+ * <li>--cache= names a file to keep the loaded volume, its brick map and its normals in, so the next start
+ * maps that instead of reading the raw file. It is rebuilt whenever the raw file changes.
+ * --cacheCompression=delta stores the voxels in about half the space, but they are then decoded on
+ * every start rather than mapped.</li>
+ * <li>--segmentCache= is the memory (MB) for per-ray skin and bone runs, which make changing only the
+ * skin opacity cheap, 0 turns them off.</li>
+ * </ul>
+ */
+public class VolumeOptions {
+    public static final String DEFAULT_FILE = "CThead";
+    public static final int DEFAULT_WIDTH = 256;
+    public static final int DEFAULT_HEIGHT = 256;
+    public static final int DEFAULT_DEPTH = 113;
+    public static final long DEFAULT_GRADIENT_BUDGET_MB = 256;
+    public static final long DEFAULT_SEGMENT_CACHE_MB = 64;
+    public static final long DEFAULT_STREAM_CACHE_MB = 512;
+
+    private final Map<String, String> params;
+    // the cache the last volume was loaded through with --cache=, and that volume.
+    private VolumeCache cache;
+    private Volume cachedVolume;
+
+    /**
+     * @param params the named parameters without their leading dashes, e.g. "file" to "CThead".
+     */
+    public VolumeOptions(Map<String, String> params) {
+        this.params = params;
+    }
+
+    /**
+     * Reads named parameters from the command line. Anything not of the form --name=value is ignored.
+     */
+    public static VolumeOptions parse(String[] args) {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (arg.startsWith("--") && equals > 2) {
+                params.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return new VolumeOptions(params);
+    }
+
+    public Path file() {
+        return Paths.get(get("file", DEFAULT_FILE));
+    }
+
+    public int width() {
+        return getInt("width", DEFAULT_WIDTH);
+    }
+
+    public int height() {
+        return getInt("height", DEFAULT_HEIGHT);
+    }
+
+    public int depth() {
+        return getInt("depth", DEFAULT_DEPTH);
+    }
+
+    /**
+     * @return whether --layout=stream was given.
+     */
+    public boolean streaming() {
+        return "stream".equals(params.get("layout"));
+    }
+
+    /**
+     * @return the memory the streaming layout may keep the volume in, which also bounds the copy
+     * volume renders are made from.
+     */
+    public long streamCacheBytes() {
+        return getLong("streamCache", DEFAULT_STREAM_CACHE_MB) << 20;
+    }
+
+    /**
+     * Loads the volume, keeping it in file order for --layout=linear, opening it for streaming
+     * for --layout=stream and bricking it otherwise. With --cache= it is read from the cache file
+     * when that is up to date, mapped as it is if it was written in the same layout, and the cache
+     * is written in that layout when it is not up to date.
+     */
+    public Volume load() throws IOException {
+        if (streaming()) {
+            return StreamingVolume.open(file(), width(), height(), depth(), streamCacheBytes());
+        }
+        int brickSize = "linear".equals(params.get("layout")) ? 0 : BrickedVolume.DEFAULT_BRICK_SIZE;
+        if (params.containsKey("cache")) {
+            cache = VolumeCache.open(Paths.get(params.get("cache")), file(), width(), height(), depth(),
+                    "delta".equals(params.get("cacheCompression")), brickSize);
+            cachedVolume = cache.volume();
+            return cachedVolume;
+        }
+        LinearVolume loaded = VolumeLoader.load(file(), width(), height(), depth());
+        return brickSize == 0 ? loaded : new BrickedVolume(loaded, brickSize);
+    }
+
+    /**
+     * @return the cache the volume was loaded through with --cache=, null without one.
+     */
+    public VolumeCache cache() {
+        return cache;
+    }
+
+    /**
+     * @return the brick map of a volume, taken from the cache if it is the volume loaded through one.
+     */
+    public BrickMap bricks(Volume volume) {
+        return cache != null && volume == cachedVolume ? cache.bricks()
+                : new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE);
+    }
+
+    /**
+     * Applies --level= and --window= to a slice renderer when both are given. A streamed volume's range
+     * is not known up front, so it is otherwise shown with a window over the usual CT range.
+     */
+    public void configure(SliceRenderer renderer) {
+        if (params.containsKey("level") && params.containsKey("window")) {
+            renderer.setWindow(getDouble("level", 0), getDouble("window", 0));
+        } else if (streaming()) {
+            renderer.setWindow(StreamingVolume.DEFAULT_LEVEL, StreamingVolume.DEFAULT_WINDOW);
+        }
+    }
+
+    /**
+     * Applies --epsilon=, --step=, --segmentCache= and --kernel= to a volume renderer, or to every level
+     * of a progressive renderer.
+     */
+    public void configure(RaySettings renderer) {
+        renderer.setSegmentCacheBudget(getLong("segmentCache", DEFAULT_SEGMENT_CACHE_MB) << 20);
+        renderer.setKernel(kernel());
+        if (params.containsKey("epsilon")) {
+            renderer.setTerminationEpsilon(getDouble("epsilon", VolumeRenderer.DEFAULT_TERMINATION_EPSILON));
+        }
+        if (params.containsKey("step")) {
+            renderer.setStepSize(getDouble("step", 1));
+        }
+    }
+
+    /**
+     * @return the compositing kernel of --kernel=scalar or --kernel=vector, scalar by default.
+     */
+    public CompositingKernel kernel() {
+        String name = params.get("kernel");
+        return name == null ? CompositingKernel.SCALAR : CompositingKernel.valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return whether --shading=phong was given.
+     */
+    public boolean shaded() {
+        return "phong".equals(params.get("shading"));
+    }
+
+    /**
+     * Precomputes the normals of a volume within --gradientBudget=, or takes them from the cache.
+     * @return the normals, or null if they do not fit in the budget.
+     */
+    public GradientVolume gradients(Volume volume, RenderEngine engine) {
+        long budget = getLong("gradientBudget", DEFAULT_GRADIENT_BUDGET_MB) << 20;
+        boolean cached = cache != null && volume == cachedVolume;
+        GradientVolume gradients;
+        if (cached && cache.gradients() != null
+                && cache.gradients().stride() == GradientVolume.stride(volume, budget)) {
+            gradients = cache.gradients();
+        } else {
+            gradients = GradientVolume.compute(volume, engine, budget);
+            if (cached && gradients != null) {
+                cache.setGradients(gradients);
+            }
+        }
+        return gradients;
+    }
+
+    /**
+     * @param gradients what gradients() returned.
+     * @return a line saying how much of --gradientBudget= the normals take, for printing.
+     */
+    public String describe(GradientVolume gradients) {
+        long budget = getLong("gradientBudget", DEFAULT_GRADIENT_BUDGET_MB) << 20;
+        if (gradients == null) {
+            return String.format(Locale.ROOT, "gradients: do not fit in the %d MB budget, shading is off",
+                    budget >> 20);
+        }
+        return String.format(Locale.ROOT, "gradients: %.1f MB of %d MB budget, one normal every %d voxels",
+                gradients.bytes() / (double) (1 << 20), budget >> 20, gradients.stride());
+    }
+
+    public boolean has(String name) {
+        return params.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        return params.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,628 @@
+package cthead;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class volume renders by ray casting. For each pixel the camera gives a ray, which is clipped to the
+ * volume and then sampled front to back every step size voxels. Each sample is trilinearly interpolated
+ * from the eight voxels around it, classified through the transfer function table and composited into the
+ * pixel. Rows are independent so the work is split across threads by a RenderEngine.
+ * <p>
+ * A ray stops as soon as so little light gets through that nothing behind could change the pixel,
+ * and whole bricks that are fully transparent under the transfer function are stepped over using the
+ * BrickMap. The axis aligned views are just preset cameras whose samples land exactly on voxel centres,
+ * where interpolation is skipped. The transfer function and step size must not be changed while a
+ * render is running.
+ * <p>
+ * With a segment cache budget, unshaded renders with one of the CThead transfer functions first record
+ * the skin and bone runs along every ray of the camera. A later render from the same camera with only
+ * the skin opacity changed is composited from those runs without touching the volume.
+ * <p>
+ * Unshaded renders of the axis aligned views with a step of one voxel and a CThead transfer function can
+ * use the vector compositing kernel, which marches a whole row of rays a slice at a time in SIMD lanes.
+ * It is only used when the jdk.incubator.vector module is present, other renders stay on the scalar
+ * kernel. When it is used it also takes the place of the segment cache.
+ */
+public class VolumeRenderer implements RaySettings {
+    // with less than this much light left the rest of the ray is below half a grey level.
+    public static final double DEFAULT_TERMINATION_EPSILON = 1.0 / 512;
+
+    private final Volume volume;
+    private final BrickMap bricks;
+    private final RenderEngine engine;
+    private final double voxelSize;
+    private TransferTable transferTable;
+    private boolean[] emptyBricks;
+    private double stepSize = 1;
+    private volatile double terminationEpsilon = DEFAULT_TERMINATION_EPSILON;
+    private GradientVolume gradients;
+    private Shading shading;
+    // the shading of every normal code for the last light direction, kept while the camera does not turn.
+    private float[] lightTable;
+    private double lightX, lightY, lightZ;
+    // the run summaries of recent cameras, least recently used first, and the memory they hold.
+    private final LinkedHashMap<Camera, SegmentCache> segmentCaches = new LinkedHashMap<>(16, 0.75f, true);
+    private long segmentCacheBytes;
+    private long segmentCacheBudget;
+    // bricks with no skin or bone values, which are empty whatever the skin opacity.
+    private boolean[] segmentEmptyBricks;
+    private CompositingKernel kernel = CompositingKernel.SCALAR;
+    private RenderStats stats;
+
+    /**
+     * @param volume the volume to render.
+     * @param bricks the brick min/max of the same volume, used to skip empty space.
+     * @param engine runs the rows in parallel.
+     * @param transferFunction the colours and opacities to start with.
+     */
+    public VolumeRenderer(Volume volume, BrickMap bricks, RenderEngine engine, TransferFunction transferFunction) {
+        this(volume, bricks, engine, transferFunction, 1);
+    }
+
+    /**
+     * @param volume the volume to render.
+     * @param bricks the brick min/max of the same volume, used to skip empty space.
+     * @param engine runs the rows in parallel.
+     * @param transferFunction the colours and opacities to start with.
+     * @param voxelSize the size of one voxel of this volume in voxels of the full resolution volume.
+     */
+    public VolumeRenderer(Volume volume, BrickMap bricks, RenderEngine engine, TransferFunction transferFunction,
+                          double voxelSize) {
+        this.volume = volume;
+        this.bricks = bricks;
+        this.engine = engine;
+        this.voxelSize = voxelSize;
+        this.transferTable = new TransferTable(transferFunction, volume.min(), volume.max(), voxelSize * stepSize);
+        this.emptyBricks = findEmptyBricks();
+    }
+
+    /**
+     * Changes the colours and opacities. The lookup table and the empty bricks are only
+     * worked out again if the transfer function is different from the current one.
+     */
+    public void setTransferFunction(TransferFunction transferFunction) {
+        if (transferTable.update(transferFunction)) {
+            emptyBricks = findEmptyBricks();
+            if (Double.isNaN(transferFunction.ctHeadSkinOpacity())) {
+                clearSegmentCache();
+            }
+        }
+    }
+
+    /**
+     * @return the transfer function currently used.
+     */
+    public TransferFunction transferFunction() {
+        return transferTable.function();
+    }
+
+    /**
+     * Changes the distance between samples along a ray. The opacities are corrected for the new
+     * distance, so a smaller step gives a smoother image of the same overall transparency.
+     * @param stepSize the distance between samples in voxels of this volume.
+     */
+    @Override
+    public void setStepSize(double stepSize) {
+        if (stepSize <= 0) {
+            throw new IllegalArgumentException("The step size must be above 0");
+        }
+        if (stepSize != this.stepSize) {
+            this.stepSize = stepSize;
+            transferTable = new TransferTable(transferTable.function(), volume.min(), volume.max(),
+                    voxelSize * stepSize);
+            clearSegmentCache();
+        }
+    }
+
+    /**
+     * @param epsilon a ray stops once its transparency falls below this, 0 walks every ray to the end.
+     */
+    @Override
+    public void setTerminationEpsilon(double epsilon) {
+        if (epsilon != terminationEpsilon) {
+            this.terminationEpsilon = epsilon;
+            clearSegmentCache();
+        }
+    }
+
+    /**
+     * Sets how much memory the per-ray segment summaries may hold. Summaries of the cameras used least
+     * recently are dropped to stay within it, and one camera's summary bigger than the whole budget is
+     * used for its render but not kept. This must not be called while a render is running.
+     * @param bytes the budget, 0 turns the segment cache off.
+     */
+    @Override
+    public void setSegmentCacheBudget(long bytes) {
+        segmentCacheBudget = bytes;
+        trimSegmentCache();
+    }
+
+    /**
+     * @return the memory held by the segment summaries.
+     */
+    public long segmentCacheBytes() {
+        return segmentCacheBytes;
+    }
+
+    /**
+     * Turns Phong shading on or off. The light shines from the eye along the viewing direction.
+     * This must not be called while a render is running.
+     * @param gradients the normals of this renderer's volume, or of the full resolution volume when this
+     * renders a lower level of a pyramid. Null turns shading off.
+     * @param shading how the normals are lit.
+     */
+    public void setShading(GradientVolume gradients, Shading shading) {
+        if (gradients != this.gradients || shading != this.shading) {
+            this.gradients = gradients;
+            this.shading = shading;
+            this.lightTable = null;
+        }
+    }
+
+    /**
+     * Picks the compositing kernel. The vector kernel falls back to the scalar one if the vector module
+     * is not present, and shaded renders always use the scalar one.
+     */
+    @Override
+    public void setKernel(CompositingKernel kernel) {
+        this.kernel = kernel == CompositingKernel.VECTOR && !CompositingKernel.vectorAvailable()
+                ? CompositingKernel.SCALAR : kernel;
+    }
+
+    /**
+     * @return the kernel unshaded renders use, after any fallback.
+     */
+    public CompositingKernel kernel() {
+        return kernel;
+    }
+
+    /**
+     * Counts the rays, samples and early terminations of every render from now on, null stops counting.
+     * This must not be called while a render is running.
+     */
+    public void setStats(RenderStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * @return whether renders are shaded.
+     */
+    public boolean isShaded() {
+        return gradients != null;
+    }
+
+    /**
+     * Renders a whole axis aligned view.
+     * @param view which way to look through the volume.
+     * @param pixels the ARGB output, view.width * view.height long.
+     */
+    public void render(View view, int[] pixels) {
+        render(Camera.of(view, volume), pixels, () -> false);
+    }
+
+    /**
+     * Renders a whole axis aligned view, giving up part way if it is cancelled.
+     * @param view which way to look through the volume.
+     * @param pixels the ARGB output, view.width * view.height long.
+     * @param cancelled returns true once the image is no longer wanted.
+     * @return whether the image was finished.
+     */
+    public boolean render(View view, int[] pixels, BooleanSupplier cancelled) {
+        return render(Camera.of(view, volume), pixels, cancelled);
+    }
+
+    /**
+     * Renders what a camera sees, giving up part way if it is cancelled.
+     * @param camera where the volume is seen from, in voxels of this volume.
+     * @param pixels the ARGB output, camera.width * camera.height long.
+     * @param cancelled returns true once the image is no longer wanted.
+     * @return whether the image was finished.
+     */
+    public boolean render(Camera camera, int[] pixels, BooleanSupplier cancelled) {
+        boolean[] empty = emptyBricks;
+        TransferTable table = transferTable;
+        double step = stepSize;
+        double epsilon = terminationEpsilon;
+        GradientVolume normals = gradients;
+        RenderStats counts = stats;
+        // a kernel asked for by name wins over the segment cache, which would otherwise replay every render.
+        View view = normals == null && kernel == CompositingKernel.VECTOR && step == 1
+                && !Double.isNaN(table.function().ctHeadSkinOpacity()) ? presetView(camera) : null;
+        if (view != null) {
+            float[] skin = classEntry(table, TransferFunction.SKIN_LOW, TransferFunction.SKIN_HIGH);
+            float[] bone = classEntry(table, TransferFunction.BONE_LOW, TransferFunction.BONE_HIGH);
+            return engine.render(pixels, camera.width(), camera.height(),
+                    (out, width, fromRow, toRow) -> VectorCompositor.renderRows(volume, bricks, view, skin, bone,
+                            epsilon, empty, counts, out, width, fromRow, toRow),
+                    cancelled);
+        }
+        if (segmentCacheBudget > 0 && normals == null && !Double.isNaN(table.function().ctHeadSkinOpacity())) {
+            return renderFromSegments(camera, table, step, epsilon, counts, pixels, cancelled);
+        }
+        float[] light = normals == null ? null : lightTable(camera);
+        return engine.render(pixels, camera.width(), camera.height(),
+                (out, width, fromRow, toRow) -> renderRows(camera, table, step, epsilon, empty, normals, light,
+                        counts, out, width, fromRow, toRow),
+                cancelled);
+    }
+
+    /**
+     * @return the axis aligned view the camera is the preset of, or null if it is not one.
+     */
+    private View presetView(Camera camera) {
+        for (View view : View.values()) {
+            if (Camera.of(view, volume).equals(camera)) {
+                return view;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Renders from the camera's segment summary, recording it first if it is not cached. Only the
+     * recording marches rays, so only it is counted in the stats.
+     */
+    private boolean renderFromSegments(Camera camera, TransferTable table, double step, double epsilon,
+                                       RenderStats counts, int[] pixels, BooleanSupplier cancelled) {
+        float[] skin = classEntry(table, TransferFunction.SKIN_LOW, TransferFunction.SKIN_HIGH);
+        float[] bone = classEntry(table, TransferFunction.BONE_LOW, TransferFunction.BONE_HIGH);
+        SegmentCache cache = segmentCaches.get(camera);
+        if (cache == null) {
+            if (segmentEmptyBricks == null) {
+                segmentEmptyBricks = findSegmentEmptyBricks();
+            }
+            boolean[] empty = segmentEmptyBricks;
+            SegmentCache recording = new SegmentCache(camera);
+            if (!engine.render(pixels, camera.width(), camera.height(),
+                    (out, width, fromRow, toRow) -> recordRows(camera, step, epsilon, bone[3], empty, recording,
+                            counts, width, fromRow, toRow),
+                    cancelled)) {
+                return false;
+            }
+            cache = recording;
+            rememberSegments(cache);
+        }
+        SegmentCache runs = cache;
+        return engine.render(pixels, camera.width(), camera.height(),
+                (out, width, fromRow, toRow) -> runs.composite(skin, bone, epsilon, out, width, fromRow, toRow),
+                cancelled);
+    }
+
+    /**
+     * @return the premultiplied colour and transparency of a sample in a class whose values all share
+     * one table entry, or a transparent entry if no value of the class is in the volume.
+     */
+    private static float[] classEntry(TransferTable table, int low, int high) {
+        float[] entries = table.entries();
+        int value = Math.max(low, table.offset());
+        int entry = (value - table.offset()) * TransferTable.ENTRY_SIZE;
+        if (value > high || entry >= entries.length) {
+            return new float[] {0, 0, 0, 1};
+        }
+        return Arrays.copyOfRange(entries, entry, entry + TransferTable.ENTRY_SIZE);
+    }
+
+    private void rememberSegments(SegmentCache cache) {
+        long bytes = cache.bytes();
+        if (bytes > segmentCacheBudget) {
+            return;
+        }
+        segmentCaches.put(cache.camera(), cache);
+        segmentCacheBytes += bytes;
+        trimSegmentCache();
+    }
+
+    private void trimSegmentCache() {
+        Iterator<SegmentCache> oldest = segmentCaches.values().iterator();
+        while (segmentCacheBytes > segmentCacheBudget && oldest.hasNext()) {
+            segmentCacheBytes -= oldest.next().bytes();
+            oldest.remove();
+        }
+    }
+
+    private void clearSegmentCache() {
+        segmentCaches.clear();
+        segmentCacheBytes = 0;
+    }
+
+    /**
+     * @return the shading table for a headlight along the camera's viewing direction.
+     */
+    private float[] lightTable(Camera camera) {
+        if (lightTable == null || camera.fx != lightX || camera.fy != lightY || camera.fz != lightZ) {
+            lightTable = shading.table(camera.fx, camera.fy, camera.fz);
+            lightX = camera.fx;
+            lightY = camera.fy;
+            lightZ = camera.fz;
+        }
+        return lightTable;
+    }
+
+    /**
+     * Marks the bricks where every voxel has opacity 0 under the transfer function.
+     */
+    private boolean[] findEmptyBricks() {
+        boolean[] empty = new boolean[bricks.count()];
+        for (int b = 0; b < empty.length; b++) {
+            empty[b] = transferTable.isTransparent(bricks.min(b), bricks.max(b));
+        }
+        return empty;
+    }
+
+    /**
+     * Marks the bricks with no value in the skin or bone range, which no CThead transfer function shows.
+     */
+    private boolean[] findSegmentEmptyBricks() {
+        boolean[] empty = new boolean[bricks.count()];
+        for (int b = 0; b < empty.length; b++) {
+            int low = bricks.min(b), high = bricks.max(b);
+            empty[b] = (high < TransferFunction.SKIN_LOW || low > TransferFunction.SKIN_HIGH)
+                    && (high < TransferFunction.BONE_LOW || low > TransferFunction.BONE_HIGH);
+        }
+        return empty;
+    }
+
+    /**
+     * Casts the rays of the rows fromRow (inclusive) to toRow (exclusive). Nothing in here allocates
+     * per ray or per sample so the JIT can keep the whole march in registers. With normals each sample
+     * also looks up the normal nearest to it and its lighting, instead of reading six neighbours.
+     * With stats the samples and early stops are counted in locals and added once for the band.
+     */
+    void renderRows(Camera camera, TransferTable transfer, double step, double epsilon, boolean[] emptyBricks,
+                    GradientVolume normals, float[] light, RenderStats stats, int[] pixels, int width,
+                    int fromRow, int toRow) {
+        Volume volume = this.volume;
+        float[] table = transfer.entries();
+        int tableOffset = transfer.offset();
+        int nx = volume.width(), ny = volume.height(), nz = volume.depth();
+        int lastX = nx - 1, lastY = ny - 1, lastZ = nz - 1;
+        double maxX = lastX, maxY = lastY, maxZ = lastZ;
+        int brickShift = bricks.brickShift();
+        int brickSize = bricks.brickSize();
+        int bricksX = bricks.size(0), bricksY = bricks.size(1);
+        double[] ray = new double[6];
+        // sample positions in this volume's voxels are scaled to the normal grid, half a grid step added
+        // so the casts round to the nearest grid point.
+        double normalScale = normals == null ? 0 : voxelSize / normals.stride();
+        int lastNormalX = normals == null ? 0 : normals.size(0) - 1;
+        int lastNormalY = normals == null ? 0 : normals.size(1) - 1;
+        int lastNormalZ = normals == null ? 0 : normals.size(2) - 1;
+
+        int entry;
+        double red, green, blue, transparency;
+        long sampleCount = 0, terminatedCount = 0;
+
+        for (int j = fromRow; j < toRow; j++) {
+            for (int i = 0; i < width; i++) {
+
+                red = green = blue = 0;
+                transparency = 1;
+                camera.ray(i, j, ray);
+                double ox = ray[0], oy = ray[1], oz = ray[2];
+                double dx = ray[3], dy = ray[4], dz = ray[5];
+
+                // clip the ray to the box through the outer voxel centres.
+                double tNear = 0, tFar = Double.POSITIVE_INFINITY;
+                tNear = Math.max(tNear, enter(ox, dx, maxX));
+                tFar = Math.min(tFar, leave(ox, dx, maxX));
+                tNear = Math.max(tNear, enter(oy, dy, maxY));
+                tFar = Math.min(tFar, leave(oy, dy, maxY));
+                tNear = Math.max(tNear, enter(oz, dz, maxZ));
+                tFar = Math.min(tFar, leave(oz, dz, maxZ));
+                int samples = tNear <= tFar ? (int) ((tFar - tNear) / step) + 1 : 0;
+
+                // step the sample position along the ray, exact for the axis aligned presets.
+                double stepX = dx * step, stepY = dy * step, stepZ = dz * step;
+                double x = ox + tNear * dx, y = oy + tNear * dy, z = oz + tNear * dz;
+                for (int k = 0; k < samples; k++, x += stepX, y += stepY, z += stepZ) {
+                    // the clipping keeps the sample inside, bar rounding, which the casts and mins absorb.
+                    int x0 = Math.min((int) x, lastX), y0 = Math.min((int) y, lastY), z0 = Math.min((int) z, lastZ);
+
+                    int brick = ((z0 >> brickShift) * bricksY + (y0 >> brickShift)) * bricksX + (x0 >> brickShift);
+                    if (emptyBricks[brick]) {
+                        // jump to the last sample before the face of the brick the ray leaves through.
+                        double exit = Math.min(tFar, Math.min(brickExit(ox, dx, x0, brickShift, brickSize),
+                                Math.min(brickExit(oy, dy, y0, brickShift, brickSize),
+                                        brickExit(oz, dz, z0, brickShift, brickSize))));
+                        int skipTo = Math.max(k, (int) Math.ceil((exit - tNear) / step) - 1);
+                        x += (skipTo - k) * stepX;
+                        y += (skipTo - k) * stepY;
+                        z += (skipTo - k) * stepZ;
+                        k = skipTo;
+                        continue;
+                    }
+
+                    int value = sample(volume, x, y, z, x0, y0, z0, lastX, lastY, lastZ);
+
+                    // the table holds the colour already scaled by opacity, then 1 - opacity.
+                    entry = (value - tableOffset) * TransferTable.ENTRY_SIZE;
+                    if (normals == null) {
+                        red += transparency * table[entry];
+                        green += transparency * table[entry + 1];
+                        blue += transparency * table[entry + 2];
+                    } else {
+                        int normal = 2 * normals.code(
+                                Math.min((int) (x * normalScale + 0.5), lastNormalX),
+                                Math.min((int) (y * normalScale + 0.5), lastNormalY),
+                                Math.min((int) (z * normalScale + 0.5), lastNormalZ));
+                        double lit = light[normal];
+                        double highlight = light[normal + 1] * (1 - table[entry + 3]);
+                        red += transparency * (table[entry] * lit + highlight);
+                        green += transparency * (table[entry + 1] * lit + highlight);
+                        blue += transparency * (table[entry + 2] * lit + highlight);
+                    }
+                    transparency = transparency * table[entry + 3];
+                    sampleCount++;
+                    if (transparency < epsilon) {
+                        terminatedCount++;
+                        break;
+                    }
+                }
+                pixels[j * width + i] = argb(red, green, blue);
+            }
+        }
+        if (stats != null) {
+            stats.addRays((long) (toRow - fromRow) * width, sampleCount, terminatedCount);
+        }
+    }
+
+    /**
+     * Records the skin and bone runs of the rays of the rows fromRow (inclusive) to toRow (exclusive),
+     * marching like renderRows but classifying the samples instead of compositing them. A ray is only
+     * cut short once its bone alone lets less than epsilon through, since that holds for any skin opacity.
+     * @param boneTransparency the light one bone sample lets through.
+     */
+    private void recordRows(Camera camera, double step, double epsilon, double boneTransparency,
+                            boolean[] emptyBricks, SegmentCache cache, RenderStats stats, int width,
+                            int fromRow, int toRow) {
+        Volume volume = this.volume;
+        int lastX = volume.width() - 1, lastY = volume.height() - 1, lastZ = volume.depth() - 1;
+        double maxX = lastX, maxY = lastY, maxZ = lastZ;
+        int brickShift = bricks.brickShift();
+        int brickSize = bricks.brickSize();
+        int bricksX = bricks.size(0), bricksY = bricks.size(1);
+        double[] ray = new double[6];
+        char[] runs = new char[64];
+        long sampleCount = 0, terminatedCount = 0;
+
+        for (int j = fromRow; j < toRow; j++) {
+            int[] starts = new int[width + 1];
+            int count = 0;
+            for (int i = 0; i < width; i++) {
+                starts[i] = count;
+                camera.ray(i, j, ray);
+                double ox = ray[0], oy = ray[1], oz = ray[2];
+                double dx = ray[3], dy = ray[4], dz = ray[5];
+
+                double tNear = 0, tFar = Double.POSITIVE_INFINITY;
+                tNear = Math.max(tNear, enter(ox, dx, maxX));
+                tFar = Math.min(tFar, leave(ox, dx, maxX));
+                tNear = Math.max(tNear, enter(oy, dy, maxY));
+                tFar = Math.min(tFar, leave(oy, dy, maxY));
+                tNear = Math.max(tNear, enter(oz, dz, maxZ));
+                tFar = Math.min(tFar, leave(oz, dz, maxZ));
+                int samples = tNear <= tFar ? (int) ((tFar - tNear) / step) + 1 : 0;
+
+                double stepX = dx * step, stepY = dy * step, stepZ = dz * step;
+                double x = ox + tNear * dx, y = oy + tNear * dy, z = oz + tNear * dz;
+                double boneLeft = 1;
+                // the run being added to, -1 for none yet.
+                int last = -1;
+                for (int k = 0; k < samples; k++, x += stepX, y += stepY, z += stepZ) {
+                    int x0 = Math.min((int) x, lastX), y0 = Math.min((int) y, lastY), z0 = Math.min((int) z, lastZ);
+
+                    int brick = ((z0 >> brickShift) * bricksY + (y0 >> brickShift)) * bricksX + (x0 >> brickShift);
+                    if (emptyBricks[brick]) {
+                        double exit = Math.min(tFar, Math.min(brickExit(ox, dx, x0, brickShift, brickSize),
+                                Math.min(brickExit(oy, dy, y0, brickShift, brickSize),
+                                        brickExit(oz, dz, z0, brickShift, brickSize))));
+                        int skipTo = Math.max(k, (int) Math.ceil((exit - tNear) / step) - 1);
+                        x += (skipTo - k) * stepX;
+                        y += (skipTo - k) * stepY;
+                        z += (skipTo - k) * stepZ;
+                        k = skipTo;
+                        continue;
+                    }
+
+                    int value = sample(volume, x, y, z, x0, y0, z0, lastX, lastY, lastZ);
+                    sampleCount++;
+                    char kind;
+                    if (value >= TransferFunction.BONE_LOW && value <= TransferFunction.BONE_HIGH) {
+                        kind = SegmentCache.BONE;
+                        boneLeft *= boneTransparency;
+                    } else if (value >= TransferFunction.SKIN_LOW && value <= TransferFunction.SKIN_HIGH) {
+                        kind = 0;
+                    } else {
+                        continue;
+                    }
+                    if (last >= 0 && (runs[last] & SegmentCache.BONE) == kind
+                            && (runs[last] & SegmentCache.MAX_RUN) < SegmentCache.MAX_RUN) {
+                        runs[last]++;
+                    } else {
+                        if (count == runs.length) {
+                            runs = Arrays.copyOf(runs, count * 2);
+                        }
+                        last = count++;
+                        runs[last] = (char) (kind | 1);
+                    }
+                    if (boneLeft < epsilon) {
+                        terminatedCount++;
+                        break;
+                    }
+                }
+            }
+            starts[width] = count;
+            cache.setRow(j, Arrays.copyOf(runs, count), starts);
+        }
+        if (stats != null) {
+            stats.addRays((long) (toRow - fromRow) * width, sampleCount, terminatedCount);
+        }
+    }
+
+    /**
+     * @return the value at a sample position, trilinearly interpolated unless it is on a voxel centre.
+     * (x0, y0, z0) is the voxel at or below the position.
+     */
+    static int sample(Volume volume, double x, double y, double z, int x0, int y0, int z0,
+                              int lastX, int lastY, int lastZ) {
+        double wx = x - x0, wy = y - y0, wz = z - z0;
+        if (wx == 0 && wy == 0 && wz == 0) {
+            return volume.get(x0, y0, z0);
+        }
+        // neighbours past the last voxel have weight 0, so just read the last voxel again.
+        int x1 = Math.min(x0 + 1, lastX), y1 = Math.min(y0 + 1, lastY), z1 = Math.min(z0 + 1, lastZ);
+        double c000 = volume.get(x0, y0, z0), c100 = volume.get(x1, y0, z0);
+        double c010 = volume.get(x0, y1, z0), c110 = volume.get(x1, y1, z0);
+        double c001 = volume.get(x0, y0, z1), c101 = volume.get(x1, y0, z1);
+        double c011 = volume.get(x0, y1, z1), c111 = volume.get(x1, y1, z1);
+        double c00 = c000 + wx * (c100 - c000), c10 = c010 + wx * (c110 - c010);
+        double c01 = c001 + wx * (c101 - c001), c11 = c011 + wx * (c111 - c011);
+        double c0 = c00 + wy * (c10 - c00), c1 = c01 + wy * (c11 - c01);
+        return (int) Math.floor(c0 + wz * (c1 - c0) + 0.5);
+    }
+
+    /**
+     * @return the ray distance at which a coordinate starting at origin and moving by direction
+     * enters [0, max], or infinity if it never does.
+     */
+    static double enter(double origin, double direction, double max) {
+        if (direction == 0) {
+            return origin >= 0 && origin <= max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return direction > 0 ? (0 - origin) / direction : (max - origin) / direction;
+    }
+
+    /**
+     * @return the ray distance at which the coordinate leaves [0, max].
+     */
+    static double leave(double origin, double direction, double max) {
+        if (direction == 0) {
+            return origin >= 0 && origin <= max ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        }
+        return direction > 0 ? (max - origin) / direction : (0 - origin) / direction;
+    }
+
+    /**
+     * @return the ray distance at which the coordinate leaves the brick that voxel is in.
+     */
+    static double brickExit(double origin, double direction, int voxel, int brickShift, int brickSize) {
+        int low = (voxel >> brickShift) << brickShift;
+        if (direction > 0) {
+            return (low + brickSize - origin) / direction;
+        }
+        return direction < 0 ? (low - origin) / direction : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Packs a colour into an opaque ARGB int, limiting each component to the upper bound of 1.
+     */
+    static int argb(double red, double green, double blue) {
+        int r = (int) (Math.min(red, 1) * 255 + 0.5);
+        int g = (int) (Math.min(green, 1) * 255 + 0.5);
+        int b = (int) (Math.min(blue, 1) * 255 + 0.5);
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+}
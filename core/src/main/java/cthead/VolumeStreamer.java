@@ -0,0 +1,204 @@
+package cthead;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class makes one pass over a streaming volume, slab by slab in file order. As it goes it works out the
+ * real min and max and fills in a point sampled overview, every 2^level voxels along each axis, which is
+ * small enough to keep in memory and render while the pass is still running.
+ * <p>
+ * It also fills in a render copy, point sampled the same way on the finest grid that fits in a memory
+ * budget. Rays cross every slice of the volume, so rendering the streaming volume itself would read the
+ * whole file for every frame once it is bigger than the slabs kept in memory. Volume renders are made
+ * from the render copy instead, and only slices are read from the file.
+ */
+public class VolumeStreamer {
+    // the overview is made coarse enough to have at most this many voxels.
+    public static final long DEFAULT_OVERVIEW_VOXELS = 1L << 23;
+
+    private final StreamingVolume volume;
+    private final int level;
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final short[] overview;
+    private final int renderLevel;
+    private final short[] render;
+    // the render copy, set once the pass has finished.
+    private volatile LinearVolume renderVolume;
+    // guarded by this: how many overview slices have been filled in, and their min and max.
+    private int slicesDone;
+    private short min = Short.MAX_VALUE;
+    private short max = Short.MIN_VALUE;
+
+    /**
+     * Told how the pass is going, on the streaming thread.
+     */
+    public interface Listener {
+        /**
+         * Called after each slab.
+         */
+        void progress(int slabsDone, int slabCount);
+
+        /**
+         * Called once every voxel has been read.
+         * @param min the smallest value in the volume.
+         * @param max the largest value in the volume.
+         */
+        void finished(short min, short max);
+
+        /**
+         * Called instead of finished() if the file cannot be read.
+         */
+        void failed(IOException e);
+    }
+
+    /**
+     * @param volume the volume to pass over.
+     * @param overviewVoxels the most voxels the overview may have.
+     * @param renderBytes the most memory the render copy may take.
+     */
+    public VolumeStreamer(StreamingVolume volume, long overviewVoxels, long renderBytes) {
+        this.volume = volume;
+        this.level = levelFor(volume, overviewVoxels);
+        this.width = shrink(volume.width(), level);
+        this.height = shrink(volume.height(), level);
+        this.depth = shrink(volume.depth(), level);
+        this.overview = new short[width * height * depth];
+        this.renderLevel = levelFor(volume, renderBytes / Short.BYTES);
+        this.render = new short[shrink(volume.width(), renderLevel) * shrink(volume.height(), renderLevel)
+                * shrink(volume.depth(), renderLevel)];
+    }
+
+    /**
+     * @return the smallest level at which the volume has at most the given number of voxels.
+     */
+    private static int levelFor(Volume volume, long voxels) {
+        int level = 0;
+        while ((long) shrink(volume.width(), level) * shrink(volume.height(), level)
+                * shrink(volume.depth(), level) > voxels) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Starts the pass on a daemon thread.
+     */
+    public void start(Listener listener) {
+        Thread thread = new Thread(() -> {
+            try {
+                stream(listener);
+            } catch (IOException e) {
+                listener.failed(e);
+            }
+        }, "volume-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Makes the pass on this thread, for when there is nothing to show until it is done.
+     */
+    public void run() throws IOException {
+        stream(null);
+    }
+
+    private void stream(Listener listener) throws IOException {
+        short streamMin = Short.MAX_VALUE, streamMax = Short.MIN_VALUE;
+        short[] renderRange = {Short.MAX_VALUE, Short.MIN_VALUE};
+        int slabDepth = volume.slabDepth();
+        int sliceVoxels = volume.width() * volume.height();
+        for (int s = 0; s < volume.slabCount(); s++) {
+            short[] slab = volume.readSlab(s);
+            for (short value : slab) {
+                streamMin = (short) Math.min(streamMin, value);
+                streamMax = (short) Math.max(streamMax, value);
+            }
+            int firstZ = s * slabDepth, endZ = firstZ + slab.length / sliceVoxels;
+            sample(slab, firstZ, endZ, renderLevel, render, renderRange);
+            short[] sampledRange = {Short.MAX_VALUE, Short.MIN_VALUE};
+            int slices = sample(slab, firstZ, endZ, level, overview, sampledRange);
+            synchronized (this) {
+                slicesDone = slices;
+                min = (short) Math.min(min, sampledRange[0]);
+                max = (short) Math.max(max, sampledRange[1]);
+            }
+            if (listener != null) {
+                listener.progress(s + 1, volume.slabCount());
+            }
+        }
+        renderVolume = new LinearVolume(render, shrink(volume.width(), renderLevel),
+                shrink(volume.height(), renderLevel), shrink(volume.depth(), renderLevel), renderRange[0],
+                renderRange[1]);
+        if (listener != null) {
+            listener.finished(streamMin, streamMax);
+        }
+    }
+
+    /**
+     * Copies the voxels of a slab that lie on the grid every 2^level voxels into a smaller copy.
+     * @param firstZ the first slice of the slab.
+     * @param endZ the slice after its last.
+     * @param range the min and max of the copied voxels, widened to take these in.
+     * @return the slices of the copy filled in so far.
+     */
+    private int sample(short[] slab, int firstZ, int endZ, int level, short[] target, short[] range) {
+        int targetWidth = shrink(volume.width(), level), targetHeight = shrink(volume.height(), level);
+        int targetDepth = shrink(volume.depth(), level);
+        int tz = (firstZ + (1 << level) - 1) >> level;
+        for (; tz < targetDepth && tz << level < endZ; tz++) {
+            int slabSlice = (tz << level) - firstZ;
+            for (int ty = 0; ty < targetHeight; ty++) {
+                int row = (slabSlice * volume.height() + (ty << level)) * volume.width();
+                for (int tx = 0, index = (tz * targetHeight + ty) * targetWidth; tx < targetWidth; tx++, index++) {
+                    short value = slab[row + (tx << level)];
+                    target[index] = value;
+                    range[0] = (short) Math.min(range[0], value);
+                    range[1] = (short) Math.max(range[1], value);
+                }
+            }
+        }
+        return tz;
+    }
+
+    /**
+     * Copies the overview as far as the pass has got. Slices not read yet are filled with the lowest
+     * value seen, which is air in a CT scan.
+     * @return the overview, or null if no slice of it has been read yet.
+     */
+    public synchronized LinearVolume overview() {
+        if (slicesDone == 0) {
+            return null;
+        }
+        short[] data = Arrays.copyOf(overview, overview.length);
+        Arrays.fill(data, slicesDone * width * height, data.length, min);
+        return new LinearVolume(data, width, height, depth, min, max);
+    }
+
+    /**
+     * @return the render copy, or null until the pass has finished.
+     */
+    public LinearVolume renderVolume() {
+        return renderVolume;
+    }
+
+    /**
+     * @return log2 of how many voxels apart the render copy's samples are, 0 if it is the whole volume.
+     */
+    public int renderLevel() {
+        return renderLevel;
+    }
+
+    /**
+     * @return log2 of how many voxels apart the overview samples are.
+     */
+    public int level() {
+        return level;
+    }
+
+    private static int shrink(int size, int level) {
+        return ((size - 1) >> level) + 1;
+    }
+}
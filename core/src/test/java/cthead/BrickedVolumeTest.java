@@ -0,0 +1,46 @@
+package cthead;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The bricked layouts must give back every voxel of a volume whose sides are not multiples of the brick
+ * size, both one at a time and a row at a time.
+ */
+class BrickedVolumeTest {
+    private static final int WIDTH = 37, HEIGHT = 23, DEPTH = 113;
+
+    @Test
+    void bricksMatchLinearVolume() {
+        LinearVolume linear = TestVolumes.head(WIDTH, HEIGHT, DEPTH, 2);
+        for (int brickSize : new int[] {4, BrickedVolume.DEFAULT_BRICK_SIZE}) {
+            assertSameVoxels(linear, new BrickedVolume(linear, brickSize));
+        }
+    }
+
+    @Test
+    void mappedBricksMatchLinearVolume() {
+        LinearVolume linear = TestVolumes.head(WIDTH, HEIGHT, DEPTH, 2);
+        BrickedVolume bricked = new BrickedVolume(linear, BrickedVolume.DEFAULT_BRICK_SIZE);
+        assertSameVoxels(linear, new MappedBrickedVolume(ShortBuffer.wrap(bricked.data()), WIDTH, HEIGHT, DEPTH,
+                linear.min(), linear.max(), BrickedVolume.DEFAULT_BRICK_SIZE));
+    }
+
+    private static void assertSameVoxels(LinearVolume expected, Volume actual) {
+        short[] expectedRow = new short[WIDTH], actualRow = new short[WIDTH];
+        for (int z = 0; z < DEPTH; z++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    assertEquals(expected.get(x, y, z), actual.get(x, y, z), "voxel " + x + ", " + y + ", " + z);
+                }
+                expected.copyRow(y, z, expectedRow);
+                actual.copyRow(y, z, actualRow);
+                assertArrayEquals(expectedRow, actualRow, "row " + y + ", " + z);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package cthead;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Skipping empty bricks must not change a render, and stopping rays at the default epsilon must change
+ * no channel of a pixel by more than a grey level.
+ */
+class RayTerminationTest {
+    private final RenderEngine engine = new RenderEngine();
+    private final Volume volume = new BrickedVolume(TestVolumes.head(37, 29, 23, 3), BrickedVolume.DEFAULT_BRICK_SIZE);
+    private final Camera[] cameras = {Camera.of(View.TOP_DOWN, volume), Camera.of(View.FRONT_BACK, volume),
+            Camera.of(View.SIDE_TO_SIDE, volume), Camera.lookAt(Camera.Projection.PERSPECTIVE,
+            new double[] {-30, -20, 50}, new double[] {18, 14, 11}, new double[] {0, 0, 1}, 33, 27, 40)};
+
+    @AfterEach
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void skippingEmptyBricksKeepsPixels() {
+        BrickMap bricks = new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE);
+        VolumeRenderer skipping = new VolumeRenderer(volume, bricks, engine, TransferFunction.ctHead(0.12));
+        VolumeRenderer marching = new VolumeRenderer(volume, fullBricks(bricks), engine,
+                TransferFunction.ctHead(0.12));
+        RenderStats skipped = new RenderStats(), marched = new RenderStats();
+        skipping.setStats(skipped);
+        marching.setStats(marched);
+        for (int c = 0; c < cameras.length; c++) {
+            assertArrayEquals(render(marching, cameras[c]), render(skipping, cameras[c]), "camera " + c);
+        }
+        assertTrue(skipped.samples() < marched.samples(), "no brick was skipped");
+    }
+
+    @Test
+    void earlyTerminationIsWithinAGreyLevel() {
+        BrickMap bricks = new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE);
+        for (double opacity : new double[] {0.12, 0.5, 1}) {
+            VolumeRenderer stopping = new VolumeRenderer(volume, bricks, engine, TransferFunction.ctHead(opacity));
+            VolumeRenderer walking = new VolumeRenderer(volume, bricks, engine, TransferFunction.ctHead(opacity));
+            stopping.setTerminationEpsilon(1.0 / 512);
+            walking.setTerminationEpsilon(0);
+            for (int c = 0; c < cameras.length; c++) {
+                int[] expected = render(walking, cameras[c]);
+                int[] actual = render(stopping, cameras[c]);
+                for (int p = 0; p < expected.length; p++) {
+                    for (int shift = 0; shift < 24; shift += 8) {
+                        int difference = Math.abs((expected[p] >> shift & 0xff) - (actual[p] >> shift & 0xff));
+                        assertTrue(difference <= 1, "camera " + c + ", skin opacity " + opacity + ", pixel " + p
+                                + " is " + difference + " grey levels off");
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] render(VolumeRenderer renderer, Camera camera) {
+        int[] pixels = new int[camera.width() * camera.height()];
+        renderer.render(camera, pixels, () -> false);
+        return pixels;
+    }
+
+    /**
+     * @return a brick map of the same bricks where every brick holds the whole range of the volume, so
+     * none is ever empty.
+     */
+    private BrickMap fullBricks(BrickMap bricks) {
+        short[] min = new short[bricks.count()], max = new short[bricks.count()];
+        Arrays.fill(min, volume.min());
+        Arrays.fill(max, volume.max());
+        return new BrickMap(bricks.brickSize(), bricks.size(0), bricks.size(1), bricks.size(2), min, max);
+    }
+}
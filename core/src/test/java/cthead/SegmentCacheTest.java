@@ -0,0 +1,49 @@
+package cthead;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Renders replayed from the segment cache after a skin opacity change must be the pixels a render
+ * straight from the volume gives.
+ */
+class SegmentCacheTest {
+    private static final double[] OPACITIES = {0.12, 0, 0.05, 0.5, 1, 0.12};
+
+    private final RenderEngine engine = new RenderEngine();
+
+    @AfterEach
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void replayMatchesDirectRender() {
+        Volume volume = new BrickedVolume(TestVolumes.head(37, 29, 23, 1), BrickedVolume.DEFAULT_BRICK_SIZE);
+        BrickMap bricks = new BrickMap(volume, BrickMap.DEFAULT_BRICK_SIZE);
+        VolumeRenderer cached = new VolumeRenderer(volume, bricks, engine, TransferFunction.ctHead(OPACITIES[0]));
+        cached.setSegmentCacheBudget(64 << 20);
+        VolumeRenderer direct = new VolumeRenderer(volume, bricks, engine, TransferFunction.ctHead(OPACITIES[0]));
+        direct.setSegmentCacheBudget(0);
+
+        Camera[] cameras = {Camera.of(View.TOP_DOWN, volume), Camera.of(View.FRONT_BACK, volume),
+                Camera.of(View.SIDE_TO_SIDE, volume), Camera.lookAt(Camera.Projection.PERSPECTIVE,
+                new double[] {-30, -20, 50}, new double[] {18, 14, 11}, new double[] {0, 0, 1}, 33, 27, 40)};
+        for (int c = 0; c < cameras.length; c++) {
+            Camera camera = cameras[c];
+            for (double opacity : OPACITIES) {
+                cached.setTransferFunction(TransferFunction.ctHead(opacity));
+                direct.setTransferFunction(TransferFunction.ctHead(opacity));
+                int[] replayed = new int[camera.width() * camera.height()];
+                int[] expected = new int[replayed.length];
+                cached.render(camera, replayed, () -> false);
+                direct.render(camera, expected, () -> false);
+                assertArrayEquals(expected, replayed, "camera " + c + ", skin opacity " + opacity);
+            }
+        }
+        assertTrue(cached.segmentCacheBytes() > 0, "no segments were cached");
+    }
+}
@@ -0,0 +1,47 @@
+package cthead;
+
+import java.util.Random;
+
+/**
+ * This class makes small volumes for the tests so that no CT file is needed.
+ */
+final class TestVolumes {
+    private TestVolumes() {
+    }
+
+    /**
+     * Makes a volume that looks enough like a CT head for the renderer: air outside, a shell of skin
+     * and bone, and soft tissue inside, with noise across the band edges of the CThead transfer function.
+     * @param seed the random seed, so a failure can be repeated.
+     */
+    static LinearVolume head(int width, int height, int depth, long seed) {
+        Random random = new Random(seed);
+        short[] data = new short[width * height * depth];
+        short min = Short.MAX_VALUE, max = Short.MIN_VALUE;
+        int index = 0;
+        for (int z = 0; z < depth; z++) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++, index++) {
+                    double dx = (x - width / 2.0) / (width / 2.0);
+                    double dy = (y - height / 2.0) / (height / 2.0);
+                    double dz = (z - depth / 2.0) / (depth / 2.0);
+                    double r = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    short value;
+                    if (r > 0.9) {
+                        value = (short) (-1000 + random.nextInt(50));
+                    } else if (r > 0.8) {
+                        value = (short) (-350 + random.nextInt(450));
+                    } else if (r > 0.65) {
+                        value = (short) (250 + random.nextInt(1500));
+                    } else {
+                        value = (short) (20 + random.nextInt(60));
+                    }
+                    data[index] = value;
+                    min = (short) Math.min(min, value);
+                    max = (short) Math.max(max, value);
+                }
+            }
+        }
+        return new LinearVolume(data, width, height, depth, min, max);
+    }
+}
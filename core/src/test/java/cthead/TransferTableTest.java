@@ -0,0 +1,53 @@
+package cthead;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A table updated for a new transfer function, which only recomputes the entries the change touches,
+ * must hold what a table built for that function from scratch holds.
+ */
+class TransferTableTest {
+    private static final short MIN = -1117, MAX = 3272;
+
+    @Test
+    void updateMatchesFreshTable() {
+        TransferFunction ramp = new TransferFunction(List.of(
+                new TransferFunction.ControlPoint(-500, 0, 0, 0, 0),
+                new TransferFunction.ControlPoint(200, 1, 0.5, 0.2, 0.3),
+                new TransferFunction.ControlPoint(1800, 1, 1, 1, 0.9)));
+        TransferFunction[] functions = {TransferFunction.ctHead(0.5), TransferFunction.ctHead(0),
+                TransferFunction.ctHead(0.01), TransferFunction.ctHead(1), ramp, TransferFunction.ctHead(0.12)};
+        for (double sampleSpacing : new double[] {1, 2}) {
+            TransferTable updated = new TransferTable(TransferFunction.ctHead(0.12), MIN, MAX, sampleSpacing);
+            for (TransferFunction function : functions) {
+                assertTrue(updated.update(function));
+                TransferTable fresh = new TransferTable(function, MIN, MAX, sampleSpacing);
+                String name = function.points().size() + " points, skin opacity " + function.ctHeadSkinOpacity()
+                        + ", spacing " + sampleSpacing;
+                assertArrayEquals(fresh.entries(), updated.entries(), name);
+                for (int low = MIN - 20; low <= MAX + 20; low += 13) {
+                    for (int length : new int[] {0, 1, 9, 120, 700}) {
+                        assertEquals(fresh.isTransparent(low, low + length), updated.isTransparent(low, low + length),
+                                name + ", values " + low + " to " + (low + length));
+                    }
+                }
+                int[][] bands = {{MIN, TransferFunction.SKIN_LOW - 1},
+                        {TransferFunction.SKIN_LOW, TransferFunction.SKIN_HIGH},
+                        {TransferFunction.SKIN_HIGH + 1, TransferFunction.BONE_LOW - 1},
+                        {TransferFunction.BONE_LOW, MAX}};
+                for (int[] band : bands) {
+                    assertEquals(fresh.isTransparent(band[0], band[1]), updated.isTransparent(band[0], band[1]),
+                            name + ", values " + band[0] + " to " + band[1]);
+                }
+                assertFalse(updated.update(function), name + " changed the table again");
+            }
+        }
+    }
+}
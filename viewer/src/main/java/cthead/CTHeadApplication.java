@@ -0,0 +1,579 @@
+package cthead;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.layout.FlowPane;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.text.Font;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.io.*;
+
+/**
+ * This class reads the information of a CTHead and displays an interface in java fx that can be interacted with.
+ * @version 1.0
+ * @author Ahmad
+ * @date 02/03/2021
+ */
+public class CTHeadApplication extends Application {
+    Volume ctHead; // store the 3D volume data set
+    short min, max; // min/max value in the 3D volume data set
+    // defaults for the CThead data set, see VolumeOptions for the parameters that change them.
+    // --mipLevels= is how many lower resolution copies are built, --previewLevel= which one is shown while
+    // dragging, --frameBudget= how slow (ms) a full render must be to get a preview and --idleDelay= how
+    // long (ms) input must settle before the full render.
+    // --frameCache= is how much memory (MB) finished frames may take and --prefetch= how many slices either
+    // side of the one shown are rendered ahead.
+    // --stats= names a JSON file the performance counters are written to on exit.
+    String ctFile = VolumeOptions.DEFAULT_FILE;
+    int ct_X_Axis = VolumeOptions.DEFAULT_WIDTH;
+    int ct_Y_Axis = VolumeOptions.DEFAULT_HEIGHT;
+    int ct_Z_Axis = VolumeOptions.DEFAULT_DEPTH;
+    final int SLICE_76 = 76;
+    final double BEST_OPACITY = 0.12;
+    double opacityVal = 0.12;
+    static final long DEFAULT_FRAME_CACHE_MB = 128;
+    static final int DEFAULT_PREFETCH_SLICES = 4;
+    final RenderEngine renderEngine = new RenderEngine();
+    // renders off the FX thread, keeping only the newest request for each view
+    final RenderScheduler renderScheduler = new RenderScheduler(Platform::runLater);
+    ProgressiveRenderer volumeRenderer;
+    SliceRenderer sliceRenderer;
+    GradientVolume gradients; // normals for shading, null if they did not fit in the budget
+    boolean shaded; // whether volume renders are Phong shaded, only changed on the FX thread
+    ProjectionRenderer projectionRenderer;
+    IntensityProjection projection; // null for opacity compositing, only changed on the FX thread
+    FrameCache frameCache;
+    int prefetchSlices;
+    final Label cacheLabel = new Label();
+    VolumeOptions options;
+    // with --layout=stream the volume renderers are only made once the whole file has been read, until
+    // then volume renders come from the overview read so far.
+    volatile boolean renderersReady;
+    volatile OverviewRenderer overviewRenderer;
+    final Label streamLabel = new Label();
+    // which views last showed a volume render rather than a slice, only used on the FX thread
+    final boolean[] showingRender = new boolean[View.values().length];
+    final RenderStats renderStats = new RenderStats();
+    final Label statsLabel = new Label();
+    // how much of the budget the normals take, shown under the performance overlay
+    volatile String gradientStatus = "";
+
+    /**
+     * This method reads the cTHead file it then create a java fx interface for the user
+     * to interact with which calls all the other methods from within the class.
+     */
+    @Override
+    public void start(Stage stage) throws FileNotFoundException, IOException {
+        stage.setTitle("CTHead Viewer");
+
+        readData();
+
+        int topWidth = ct_X_Axis;
+        int topHeight = ct_Y_Axis;
+
+        int frontWidth = ct_X_Axis;
+        int frontHeight = ct_Z_Axis;
+
+        int sideWidth = ct_Y_Axis;
+        int sideHeight = ct_Z_Axis;
+
+        // We need 3 things to see an image
+        // 1. We create an image we can write to
+        WritableImage topImage = new WritableImage(topWidth, topHeight);
+        WritableImage frontImage = new WritableImage(frontWidth, frontHeight);
+        WritableImage sideImage = new WritableImage(sideWidth, sideHeight);
+
+        // 2. We create a view of that image
+        ImageView topView = new ImageView(topImage);
+        ImageView frontView = new ImageView(frontImage);
+        ImageView sideView = new ImageView(sideImage);
+
+        // sliders to step through the slices
+        Slider topSlider = new Slider(0, ct_Z_Axis - 1, 0);
+        topSlider.setShowTickMarks(true);
+        topSlider.setShowTickLabels(true);
+
+        Slider frontSlider = new Slider(0, ct_Y_Axis - 1, 0);
+        frontSlider.setShowTickMarks(true);
+        frontSlider.setShowTickLabels(true);
+
+        Slider sideSlider = new Slider(0, ct_X_Axis - 1, 0);
+        sideSlider.setShowTickMarks(true);
+        sideSlider.setShowTickLabels(true);
+
+        Slider skinOpacitySlider = new Slider(0, 1, 0);
+
+        CheckBox shadingBox = new CheckBox("Phong shading");
+        shadingBox.setSelected(shaded);
+        shadingBox.setDisable(gradients == null);
+
+        // how the volume renders reduce each ray, the projections ignore the skin opacity.
+        ChoiceBox<String> projectionBox = new ChoiceBox<>();
+        projectionBox.getItems().addAll("Composite", "Maximum intensity", "Average intensity");
+        projectionBox.getSelectionModel().select(0);
+
+        // the performance overlay, refreshed twice a second while it is shown.
+        CheckBox statsBox = new CheckBox("Performance overlay");
+        statsLabel.setFont(Font.font("Monospaced", 11));
+        statsLabel.setVisible(false);
+        statsLabel.setManaged(false);
+        Timeline statsRefresh = new Timeline(new KeyFrame(Duration.millis(500),
+                event -> statsLabel.setText(renderStats.summary() + gradientStatus)));
+        statsRefresh.setCycleCount(Timeline.INDEFINITE);
+        statsBox.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            statsLabel.setText(renderStats.summary() + gradientStatus);
+            statsLabel.setVisible(newValue);
+            statsLabel.setManaged(newValue);
+            if (newValue) {
+                statsRefresh.play();
+            } else {
+                statsRefresh.stop();
+            }
+        });
+
+        // buttons that show us the best view of the images.
+        Button sliceButton = new Button("Slice 76");
+        Button volumeRenderButton = new Button("Volume Render");
+
+        sliceButton.setOnAction(event -> {
+            /* sets the slider value to 76 which further opens slice 76. The slider then
+           runs then calls the methods to print images on screen */
+            topSlider.setValue(SLICE_76);
+            frontSlider.setValue(SLICE_76);
+            sideSlider.setValue(SLICE_76);
+            topDownSlices(topImage,SLICE_76);
+            frontBackSlices(frontImage,SLICE_76);
+            sideToSideSlices(sideImage, SLICE_76);
+        });
+
+        volumeRenderButton.setOnAction(event -> {
+             /* sets the slider value to 0.12 which further opens slice 76. The slider then
+           runs then calls the methods to print images on screen */
+            skinOpacitySlider.setValue(BEST_OPACITY);
+            topDownRender(topImage,BEST_OPACITY );
+            frontBackRender(frontImage,BEST_OPACITY);
+            sideToSideRender(sideImage, BEST_OPACITY);
+
+        });
+
+        // listeners for the slider
+        topSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            topDownSlices(topImage,newValue.intValue());
+        });
+
+        frontSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            frontBackSlices(frontImage,newValue.intValue());
+        });
+
+        sideSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            sideToSideSlices(sideImage, newValue.intValue());
+        });
+
+        skinOpacitySlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            topDownRender(topImage, newValue.doubleValue());
+            frontBackRender(frontImage, newValue.doubleValue());
+            sideToSideRender(sideImage, newValue.doubleValue());
+        });
+
+        shadingBox.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            shaded = newValue;
+            topDownRender(topImage, skinOpacitySlider.getValue());
+            frontBackRender(frontImage, skinOpacitySlider.getValue());
+            sideToSideRender(sideImage, skinOpacitySlider.getValue());
+        });
+
+        projectionBox.getSelectionModel().selectedIndexProperty().addListener((observable, oldValue, newValue) -> {
+            projection = newValue.intValue() <= 0 ? null : IntensityProjection.values()[newValue.intValue() - 1];
+            topDownRender(topImage, skinOpacitySlider.getValue());
+            frontBackRender(frontImage, skinOpacitySlider.getValue());
+            sideToSideRender(sideImage, skinOpacitySlider.getValue());
+        });
+
+        //Creating a stage and FlowPane to display the data.
+        FlowPane root = new FlowPane();
+        root.setVgap(8);
+        root.setHgap(4);
+
+        root.getChildren().addAll(topView, frontView, sideView, topSlider, frontSlider, sideSlider,
+                                    skinOpacitySlider, sliceButton, volumeRenderButton, shadingBox, projectionBox,
+                                    cacheLabel, streamLabel, statsBox, statsLabel);
+        Scene scene = new Scene(root, 800, 480);
+        stage.setScene(scene);
+        stage.show();
+
+        if (!renderersReady) {
+            // redoes the volume renders on show as better data arrives.
+            Runnable refresh = () -> {
+                if (showingRender[View.TOP_DOWN.ordinal()]) {
+                    topDownRender(topImage, skinOpacitySlider.getValue());
+                }
+                if (showingRender[View.FRONT_BACK.ordinal()]) {
+                    frontBackRender(frontImage, skinOpacitySlider.getValue());
+                }
+                if (showingRender[View.SIDE_TO_SIDE.ordinal()]) {
+                    sideToSideRender(sideImage, skinOpacitySlider.getValue());
+                }
+            };
+            startStreaming(refresh, () -> {
+                shaded = options.shaded() && gradients != null;
+                shadingBox.setSelected(shaded);
+                shadingBox.setDisable(gradients == null);
+                refresh.run();
+            });
+            // the first slab is all it takes to show the first slice.
+            topDownSlices(topImage, 0);
+        }
+    }
+
+    /**
+     * This method reads the ctHead file. The file and its dimensions come from the named
+     * command line parameters, falling back to the CThead defaults.
+     * @throws IOException
+     */
+    public void readData() throws IOException {
+        options = new VolumeOptions(getParameters() == null ? Map.of() : getParameters().getNamed());
+        ctFile = options.file().toString();
+        ct_X_Axis = options.width();
+        ct_Y_Axis = options.height();
+        ct_Z_Axis = options.depth();
+
+        renderEngine.setStats(renderStats);
+        long loadStart = System.nanoTime();
+        long loadAllocated = RenderStats.allocatedBytes();
+        ctHead = options.load();
+        renderStats.record(RenderStats.Stage.LOAD, System.nanoTime() - loadStart,
+                RenderStats.allocatedBytes() - loadAllocated);
+        min = ctHead.min();
+        max = ctHead.max();
+        sliceRenderer = new SliceRenderer(ctHead, renderEngine);
+        options.configure(sliceRenderer);
+        frameCache = new FrameCache(options.getLong("frameCache", DEFAULT_FRAME_CACHE_MB) << 20);
+        cacheLabel.setText(cacheText());
+        prefetchSlices = options.getInt("prefetch", DEFAULT_PREFETCH_SLICES);
+        if (!options.streaming()) {
+            buildRenderers(ctHead);
+            shaded = options.shaded() && gradients != null;
+        }
+    }
+
+    /**
+     * Makes the volume renderers. These read the whole volume, so for a streamed volume this
+     * runs in the background once the file has been read through.
+     */
+    private void buildRenderers(Volume volume) {
+        int previewLevel = options.getInt("previewLevel", RefinementPolicy.DEFAULT_PREVIEW_LEVEL);
+        RefinementPolicy policy = new RefinementPolicy(previewLevel,
+                options.getLong("frameBudget", RefinementPolicy.DEFAULT_FRAME_BUDGET_MILLIS),
+                options.getLong("idleDelay", RefinementPolicy.DEFAULT_IDLE_DELAY_MILLIS));
+        BrickMap bricks = options.bricks(volume);
+        volumeRenderer = new ProgressiveRenderer(new MipPyramid(volume, options.getInt("mipLevels", previewLevel)),
+                bricks, renderEngine, TransferFunction.ctHead(opacityVal), policy);
+        projectionRenderer = new ProjectionRenderer(volume, bricks,
+                renderEngine, sliceRenderer.greyTable());
+        options.configure(volumeRenderer);
+        volumeRenderer.setStats(renderStats);
+        gradients = options.gradients(volume, renderEngine);
+        gradientStatus = "\n" + options.describe(gradients);
+        renderersReady = true;
+    }
+
+    /**
+     * Reads a streamed volume through in the background. Each tenth of the way a new overview renderer
+     * is made and onOverview is run, and once it is all read onReady is run, both on the FX thread.
+     * The volume renders never read the streamed volume, only the copy the streamer keeps in memory:
+     * the full renderers are made over it if it holds every voxel, and otherwise it becomes the
+     * overview for good.
+     */
+    private void startStreaming(Runnable onOverview, Runnable onReady) {
+        StreamingVolume volume = (StreamingVolume) ctHead;
+        VolumeStreamer streamer = new VolumeStreamer(volume, VolumeStreamer.DEFAULT_OVERVIEW_VOXELS,
+                options.streamCacheBytes());
+        streamer.start(new VolumeStreamer.Listener() {
+            private int tenths;
+
+            @Override
+            public void progress(int slabsDone, int slabCount) {
+                int percent = slabsDone * 100 / slabCount;
+                if (percent / 10 > tenths || slabsDone == 1) {
+                    tenths = percent / 10;
+                    LinearVolume overview = streamer.overview();
+                    if (overview != null) {
+                        OverviewRenderer renderer = new OverviewRenderer(overview, streamer.level(), renderEngine,
+                                sliceRenderer.greyTable());
+                        renderer.setStats(renderStats);
+                        overviewRenderer = renderer;
+                        Platform.runLater(onOverview);
+                    }
+                }
+                Platform.runLater(() -> streamLabel.setText("streaming " + percent + "%"));
+            }
+
+            @Override
+            public void finished(short min, short max) {
+                int level = streamer.renderLevel();
+                if (level == 0) {
+                    Platform.runLater(() -> streamLabel.setText("building renderers, values " + min + " to " + max));
+                    buildRenderers(streamer.renderVolume());
+                } else {
+                    OverviewRenderer renderer = new OverviewRenderer(streamer.renderVolume(), level, renderEngine,
+                            sliceRenderer.greyTable());
+                    renderer.setStats(renderStats);
+                    overviewRenderer = renderer;
+                }
+                Platform.runLater(() -> {
+                    streamLabel.setText(String.format("streamed: %d slab loads, %d evictions, %.1f MB held%s",
+                            volume.loads(), volume.evictions(), volume.residentBytes() / (double) (1 << 20),
+                            level == 0 ? "" : ", renders every " + (1 << level) + " voxels"));
+                    onReady.run();
+                });
+            }
+
+            @Override
+            public void failed(IOException e) {
+                Platform.runLater(() -> streamLabel.setText("could not read " + ctFile + ": " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * This method copies a slice of data from the top of the head down into the image.
+     * The grey of each voxel comes from the window/level table and the slice is written in one step.
+     * @param image would be image that goes from top of head to spinal cord.
+     */
+    public void topDownSlices(WritableImage image, int sliceNum) {
+        sliceView(image, View.TOP_DOWN, sliceNum);
+    }
+
+    /**
+     * This method copies a slice of data from the nose back into the image.
+     * The grey of each voxel comes from the window/level table and the slice is written in one step.
+     * @param image would be image that goes from nose to back of head.
+     */
+    public void frontBackSlices(WritableImage image, int sliceNum) {
+        sliceView(image, View.FRONT_BACK, sliceNum);
+    }
+
+    /**
+     * This method copies a slice of data from ear to ear into the image.
+     * The grey of each voxel comes from the window/level table and the slice is written in one step.
+     * @param image would be image that goes from ear to ear.
+     */
+    public void sideToSideSlices(WritableImage image, int sliceNum) {
+        sliceView(image, View.SIDE_TO_SIDE, sliceNum);
+    }
+
+    /**
+     * Schedules a slice of the view in the background, the image is updated once it is done.
+     * Slices already shown come from the frame cache, and the slices either side are prefetched
+     * so dragging on through them is a copy too.
+     */
+    private void sliceView(WritableImage image, View view, int sliceNum) {
+        int w = (int) image.getWidth(), h = (int) image.getHeight();
+        long requested = System.nanoTime();
+        showingRender[view.ordinal()] = false;
+
+        renderScheduler.submit(view, w * h, cached(sliceKey(view, sliceNum), w * h,
+                timed(RenderStats.Stage.SLICE, (pixels, cancelled) -> sliceRenderer.render(view, sliceNum, pixels,
+                        cancelled))),
+                pixels -> publish(image, pixels, requested));
+
+        List<FrameCache.Key> neighbours = new ArrayList<>();
+        for (int d = 1; d <= prefetchSlices; d++) {
+            for (int slice : new int[] {sliceNum + d, sliceNum - d}) {
+                if (slice >= 0 && slice < view.depth(ctHead)) {
+                    neighbours.add(sliceKey(view, slice));
+                }
+            }
+        }
+        frameCache.prefetch(neighbours, key -> {
+            int[] pixels = new int[w * h];
+            sliceRenderer.render(key.view(), key.index(), pixels);
+            return pixels;
+        });
+    }
+
+    private FrameCache.Key sliceKey(View view, int sliceNum) {
+        GreyTable window = sliceRenderer.greyTable();
+        return new FrameCache.Key(view, "slice", sliceNum, window.level(), window.window());
+    }
+
+    /**
+     * Wraps a render so it copies the frame from the cache if it is there, and otherwise
+     * keeps the finished frame in the cache.
+     */
+    private RenderScheduler.Job cached(FrameCache.Key key, int length, RenderScheduler.Job job) {
+        return (pixels, cancelled) -> {
+            int[] frame = frameCache.get(key);
+            if (frame != null) {
+                System.arraycopy(frame, 0, pixels, 0, length);
+                return true;
+            }
+            if (!job.render(pixels, cancelled)) {
+                return false;
+            }
+            frameCache.put(key, pixels, length);
+            return true;
+        };
+    }
+
+    /**
+     * Wraps a render so the time it takes is counted as a stage, if it finishes.
+     */
+    private RenderScheduler.Job timed(RenderStats.Stage stage, RenderScheduler.Job job) {
+        return (pixels, cancelled) -> renderStats.time(stage, () -> job.render(pixels, cancelled));
+    }
+
+    /**
+     * This method volume renders the view from the top of the head to the spinal cord.
+     * The compositing runs in parallel in the background and the finished image is written in one step.
+     * @param image would be image that goes from top of head to spinal cord.
+     */
+    public void topDownRender(WritableImage image, double skinOpacity) {
+        renderView(image, View.TOP_DOWN, skinOpacity);
+    }
+
+    /**
+     * This method volume renders the view from the nose to the back of the head.
+     * The compositing runs in parallel in the background and the finished image is written in one step.
+     * @param image would be image that goes from nose to back of head.
+     */
+    public void frontBackRender(WritableImage image, double skinOpacity) {
+        renderView(image, View.FRONT_BACK, skinOpacity);
+    }
+
+    /**
+     * This method volume renders the view from ear to ear.
+     * The compositing runs in parallel in the background and the finished image is written in one step.
+     * @param image would be image that goes from ear to ear.
+     */
+    public void sideToSideRender(WritableImage image, double skinOpacity) {
+        renderView(image, View.SIDE_TO_SIDE, skinOpacity);
+    }
+
+    /**
+     * Schedules a volume render of the view in the background, the image is updated once it is done.
+     * If full renders of the view are slow a low resolution preview is shown first and the full
+     * render only starts once the slider has been still for the idle delay.
+     * The lookup table is only touched when the skin opacity has changed since the last render.
+     * Maximum and average intensity projections are quick enough to go straight to full resolution.
+     * The opacity is rounded to one of FrameCache.OPACITY_STEPS so finished frames can be reused, and a
+     * frame in the cache is shown straight away without a preview.
+     */
+    private void renderView(WritableImage image, View view, double skinOpacity) {
+        int w = (int) image.getWidth(), h = (int) image.getHeight();
+        long requested = System.nanoTime();
+        GreyTable window = sliceRenderer.greyTable();
+        IntensityProjection mode = projection;
+        int opacityIndex = FrameCache.quantize(skinOpacity);
+        TransferFunction transferFunction = TransferFunction.ctHead(FrameCache.opacity(opacityIndex));
+        showingRender[view.ordinal()] = true;
+        if (!renderersReady) {
+            // still streaming, show the overview if any of it has been read. These are not cached.
+            OverviewRenderer overview = overviewRenderer;
+            if (overview != null) {
+                renderScheduler.submit(view, w * h, timed(mode == null ? RenderStats.Stage.COMPOSITE
+                                : RenderStats.Stage.PROJECTION,
+                        (pixels, cancelled) -> overview.render(view, transferFunction, mode, pixels, w, h, cancelled)),
+                        pixels -> publish(image, pixels, requested));
+            }
+            return;
+        }
+        if (mode != null) {
+            FrameCache.Key key = new FrameCache.Key(view, mode.name(), 0, window.level(), window.window());
+            renderScheduler.submit(view, w * h, cached(key, w * h, timed(RenderStats.Stage.PROJECTION,
+                    (pixels, cancelled) -> projectionRenderer.render(view, mode, pixels, cancelled))),
+                    pixels -> publish(image, pixels, requested));
+            return;
+        }
+        GradientVolume normals = shaded ? gradients : null;
+        FrameCache.Key key = new FrameCache.Key(view, normals == null ? "composite" : "shaded", opacityIndex,
+                window.level(), window.window());
+
+        RenderScheduler.Job full = cached(key, w * h, timed(RenderStats.Stage.COMPOSITE, (pixels, cancelled) -> {
+            // runs on the render thread, so nothing else is reading the table while it changes.
+            volumeRenderer.setTransferFunction(transferFunction);
+            volumeRenderer.setShading(normals, Shading.DEFAULT);
+            return volumeRenderer.renderFull(view, pixels, cancelled);
+        }));
+        if (frameCache.contains(key) || !volumeRenderer.wantsPreview(view)) {
+            renderScheduler.submit(view, w * h, full, pixels -> publish(image, pixels, requested));
+            return;
+        }
+        renderScheduler.submit(view, w * h, timed(RenderStats.Stage.COMPOSITE, (pixels, cancelled) -> {
+            volumeRenderer.setTransferFunction(transferFunction);
+            volumeRenderer.setShading(normals, Shading.DEFAULT);
+            return volumeRenderer.renderPreview(view, pixels, cancelled);
+        }), pixels -> publish(image, pixels, requested));
+        renderScheduler.submitAfter(view, volumeRenderer.policy().idleDelayMillis(), w * h, full,
+                pixels -> publish(image, pixels, requested));
+    }
+
+    /**
+     * Writes a whole frame of opaque pixels to the image with a single call, counting the upload and
+     * the whole wait since the frame was asked for.
+     * @param requested System.nanoTime() when the frame was asked for.
+     */
+    private void publish(WritableImage image, int[] pixels, long requested) {
+        int w = (int) image.getWidth(), h = (int) image.getHeight();
+        long start = System.nanoTime();
+        long allocated = RenderStats.allocatedBytes();
+        image.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), pixels, 0, w);
+        long end = System.nanoTime();
+        renderStats.record(RenderStats.Stage.UPLOAD, end - start, RenderStats.allocatedBytes() - allocated);
+        renderStats.record(RenderStats.Stage.FRAME, end - requested, 0);
+        cacheLabel.setText(cacheText());
+    }
+
+    /**
+     * @return the state of the frame cache, under how the volume cache was opened if there is one.
+     */
+    private String cacheText() {
+        return options.cache() == null ? frameCache.toString() : options.cache() + "\n" + frameCache;
+    }
+
+    @Override
+    public void stop() {
+        renderScheduler.shutdown();
+        frameCache.shutdown();
+        if (options != null && options.has("stats")) {
+            try {
+                renderStats.writeJson(Paths.get(options.get("stats", "")));
+            } catch (IOException e) {
+                System.err.println("Could not write the stats: " + e.getMessage());
+            }
+        }
+        renderEngine.shutdown();
+        if (ctHead instanceof StreamingVolume) {
+            try {
+                ((StreamingVolume) ctHead).close();
+            } catch (IOException e) {
+                // nothing more to read from it anyway.
+            }
+        }
+    }
+
+    /**
+     * This method simply launches the code.
+     */
+    public static void main(String[] args) {
+
+        launch(args);
+    }
+}
\ No newline at end of file